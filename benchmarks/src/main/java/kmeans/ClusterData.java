@@ -0,0 +1,48 @@
+package kmeans;
+
+import java.util.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Synthetic dataset and centroids shared by the clustering benchmarks. The
+ * instances are generated with the Gaussian generator from the visualization.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+@State(Scope.Benchmark)
+public class ClusterData 
+{
+    // Number of instances
+    @Param({"10000", "100000"})
+    int n;
+    // Number of attributes
+    @Param({"2", "16", "128"})
+    int d;
+    // Number of clusters
+    @Param({"4", "16", "64"})
+    int k;
+    
+    // The dataset
+    DenseDataset data;
+    // k-means++ centroids for the dataset
+    double[] centroids;
+    // Cluster index for each instance, from assigning to the centroids
+    int[] labels;
+    // Blocked assigner with cached instance norms
+    BlockedAssigner blocked;
+    
+    @Setup
+    public void setup() {
+        data = Main.gaussian_data(42, n, d, k);
+        centroids = new KMeansPlusPlus().seed(data, k, new Random(1));
+        
+        labels = new int[n];
+        Arrays.fill(labels, -1);
+        LloydAssigner a = new LloydAssigner();
+        a.init(data, k);
+        a.assign_range(0, n, centroids, labels, new ClusterSums(k, d));
+        
+        blocked = new BlockedAssigner();
+        blocked.init(data, k);
+    }
+}
@@ -0,0 +1,82 @@
+package kmeans;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks for the hot paths in k-means clustering: one assignment pass, the
+ * centroid update and a full run until convergence.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClusteringBenchmark 
+{
+    /**
+     * Assigns all instances to the closest centroid with the plain assignment.
+     * 
+     * @param s Benchmark data
+     * @return Sums for all clusters
+     */
+    @Benchmark
+    public ClusterSums assignment(ClusterData s) {
+        int[] labels = s.labels.clone();
+        ClusterSums sums = new ClusterSums(s.k, s.d);
+        LloydAssigner a = new LloydAssigner();
+        a.init(s.data, s.k);
+        a.prepare(s.centroids);
+        a.assign_range(0, s.n, s.centroids, labels, sums);
+        return sums;
+    }
+    
+    /**
+     * Assigns all instances to the closest centroid with the blocked matrix
+     * assignment. The instance norms are cached in the setup, as in a run.
+     * 
+     * @param s Benchmark data
+     * @return Sums for all clusters
+     */
+    @Benchmark
+    public ClusterSums blocked_assignment(ClusterData s) {
+        int[] labels = s.labels.clone();
+        ClusterSums sums = new ClusterSums(s.k, s.d);
+        s.blocked.prepare(s.centroids);
+        s.blocked.assign_range(0, s.n, s.centroids, labels, sums);
+        return sums;
+    }
+    
+    /**
+     * Accumulates the sums for the current labels and recalculates the centroids.
+     * 
+     * @param s Benchmark data
+     * @return New centroids
+     */
+    @Benchmark
+    public double[] update(ClusterData s) {
+        ClusterSums sums = new ClusterSums(s.k, s.d);
+        for (int i = 0; i < s.n; i++) {
+            sums.add(s.data, i, s.labels[i]);
+        }
+        double[] centroids = s.centroids.clone();
+        sums.recalc_centers(centroids, 0);
+        return centroids;
+    }
+    
+    /**
+     * Runs k-means with k-means++ seeding until convergence.
+     * 
+     * @param s Benchmark data
+     * @return The result
+     */
+    @Benchmark
+    public KMeansResult convergence(ClusterData s) {
+        KMeans km = new KMeans(new Random(1));
+        km.set_max_iterations(100);
+        return km.run(s.data, s.k);
+    }
+}
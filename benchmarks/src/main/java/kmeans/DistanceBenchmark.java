@@ -0,0 +1,75 @@
+package kmeans;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmark for the distance kernels between an instance and the centroids.
+ * The SIMD kernel falls back to the scalar kernel if the Vector API module is
+ * not available.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceBenchmark 
+{
+    // Number of centroids for the batch kernel
+    static final int K = 16;
+    
+    // Number of attributes
+    @Param({"2", "16", "128", "1024"})
+    int d;
+    
+    // Instances to measure distances from
+    DenseDataset data;
+    // Centroids to measure distances to
+    double[] centroids;
+    // Squared distance to each centroid
+    double[] out = new double[K];
+    // Scalar kernel
+    DistanceKernel scalar = new ScalarKernel();
+    // Kernel picked at startup
+    DistanceKernel simd = DistanceKernel.get();
+    // Index of the next instance
+    int i;
+    
+    @Setup
+    public void setup() {
+        data = Main.gaussian_data(42, 1024, d, 4);
+        centroids = new double[K * d];
+        for (int c = 0; c < K; c++) {
+            KMeansPlusPlus.copy_row(data, c, centroids, c * d);
+        }
+    }
+    
+    @Benchmark
+    public double scalar() {
+        i = (i + 1) & 1023;
+        return scalar.sq_euclidean(data.values, i * d, centroids, 0, d);
+    }
+    
+    @Benchmark
+    public double simd() {
+        i = (i + 1) & 1023;
+        return simd.sq_euclidean(data.values, i * d, centroids, 0, d);
+    }
+    
+    @Benchmark
+    public double[] scalar_all_centroids() {
+        i = (i + 1) & 1023;
+        scalar.sq_euclidean_all(data.values, i * d, centroids, K, d, out);
+        return out;
+    }
+    
+    @Benchmark
+    public double[] simd_all_centroids() {
+        i = (i + 1) & 1023;
+        simd.sq_euclidean_all(data.values, i * d, centroids, K, d, out);
+        return out;
+    }
+}
@@ -0,0 +1,150 @@
+package kmeans;
+
+/**
+ * Strategy for the assignment step in k-means clustering, i.e. finding the
+ * closest centroid for each instance. The dataset is split into ranges that can
+ * be assigned in parallel, so implementations must only write per-instance state
+ * for the instances in their range.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public abstract class Assigner 
+{
+    // The dataset
+    Dataset data;
+    // Number of clusters
+    int k;
+    // Number of attributes
+    int d;
+    // Squared norm of each centroid in the current iteration
+    double[] c_norms;
+    
+    /**
+     * Prepares the assigner for a new run.
+     * 
+     * @param data The dataset
+     * @param k Number of clusters
+     */
+    public void init(Dataset data, int k) {
+        this.data = data;
+        this.k = k;
+        this.d = data.dimensions();
+        this.c_norms = new double[k];
+    }
+    
+    /**
+     * Called once per iteration with the current centroids, before any range
+     * is assigned. Calculates the squared norm of each centroid, used by sparse
+     * datasets to only touch the non-zero values of an instance.
+     * 
+     * @param centroids Centroids, one row of attributes per cluster
+     */
+    public void prepare(double[] centroids) {
+        Dataset.sq_norms(centroids, k, d, c_norms);
+    }
+    
+    /**
+     * Assigns a range of instances to the closest cluster.
+     * 
+     * @param lo First instance
+     * @param hi Last instance (exclusive)
+     * @param centroids Centroids, one row of attributes per cluster
+     * @param labels Cluster index for each instance (-1 if not assigned yet)
+     * @param sums Sums to add the instances to
+     */
+    public abstract void assign_range(int lo, int hi, double[] centroids, int[] labels, ClusterSums sums);
+    
+    /**
+     * Called when an instance was moved to another cluster outside the assignment
+     * step, for example when an empty cluster is reseeded.
+     * 
+     * @param i Index of the instance
+     */
+    public void moved(int i) {
+        
+    }
+    
+    /**
+     * Assigns an instance to a cluster and counts it if it changed cluster.
+     * 
+     * @param i Index of the instance
+     * @param c Index of the cluster
+     * @param labels Cluster index for each instance
+     * @param sums Sums to add the instance to
+     */
+    protected void assign(int i, int c, int[] labels, ClusterSums sums) {
+        sums.add(data, i, c);
+        if (labels[i] != c) {
+            labels[i] = c;
+            sums.changed(i);
+        }
+    }
+    
+    /**
+     * Returns the assigner used when none is set: the k-d tree filtering for
+     * large low-dimensional datasets, the blocked matrix assignment when k and
+     * k*d are large enough for it to pay off on a dense dataset, and the plain
+     * assignment otherwise. Reduced datasets that keep their exact values
+     * always get the plain assignment, since only it does the rechecks.
+     * 
+     * @param data The dataset
+     * @param k Number of clusters
+     * @return The assigner
+     */
+    public static Assigner auto(Dataset data, int k) {
+        if (ReducedDataset.rechecked(data)) {
+            return new LloydAssigner();
+        }
+        if (data.dimensions() <= 3 && data.size() >= 50000 && k > 1) {
+            return new KdTreeAssigner();
+        }
+        if (data instanceof DenseDataset && k >= 32 && k * data.dimensions() >= 1024) {
+            return new BlockedAssigner();
+        }
+        return new LloydAssigner();
+    }
+    
+    /**
+     * Returns the accelerated assigner suited for the number of clusters:
+     * Hamerly for low k, since it only keeps one lower bound per instance, and
+     * Elkan for higher k, where its per-cluster bounds skip more distances.
+     * Hamerly is also used when Elkan's n*k lower bounds don't fit in one
+     * array.
+     * 
+     * @param data The dataset
+     * @param k Number of clusters
+     * @return The assigner
+     */
+    public static Assigner accelerated(Dataset data, int k) {
+        if (k <= 20 || !ElkanAssigner.fits(data.size(), k)) {
+            return new HamerlyAssigner();
+        }
+        return new ElkanAssigner();
+    }
+    
+    /**
+     * Returns the fastest assigner for running to convergence: the k-d tree
+     * filtering when auto picks it and k is at least 16, and the accelerated
+     * assignment otherwise. The bounds of the accelerated assigners skip most
+     * distances after the first few iterations, while the blocked assignment
+     * calculates all of them in every iteration, so the accelerated
+     * assignment converges faster even where the blocked one beats the plain
+     * one. On low-dimensional data the k-d tree skips whole subtrees, which
+     * pays off over the bounds from about k=16. Reduced datasets that keep
+     * their exact values get the plain assignment, as in auto.
+     * 
+     * @param data The dataset
+     * @param k Number of clusters
+     * @return The assigner
+     */
+    public static Assigner fastest(Dataset data, int k) {
+        if (ReducedDataset.rechecked(data)) {
+            return new LloydAssigner();
+        }
+        Assigner a = auto(data, k);
+        if (a instanceof KdTreeAssigner && k >= 16) {
+            return a;
+        }
+        return accelerated(data, k);
+    }
+}
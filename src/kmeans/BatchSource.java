@@ -0,0 +1,19 @@
+package kmeans;
+
+/**
+ * Source of instances that are read one batch at a time, for example from a
+ * file or an event stream.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public interface BatchSource 
+{
+    /**
+     * Reads the next batch of instances. A source may reuse the returned dataset
+     * for the next batch, so it is only valid until this method is called again.
+     * 
+     * @param size Max number of instances in the batch
+     * @return The batch, or null if there are no more instances
+     */
+    Dataset next_batch(int size);
+}
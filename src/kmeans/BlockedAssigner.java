@@ -0,0 +1,151 @@
+package kmeans;
+
+import java.util.Arrays;
+
+/**
+ * Assignment with distances calculated in matrix form, as
+ * ||x||^2 - 2 x.c + ||c||^2. The squared norms of the instances are calculated
+ * once per run and the norms of the centroids once per iteration, so the work
+ * left is the dot products between all instances and all centroids. These are
+ * calculated as a cache-blocked matrix multiplication: a block of instances is
+ * multiplied with a block of centroids, one tile of attributes at a time, so
+ * both blocks stay in cache while they are reused. Pays off for large k and d.
+ * Requires a dense dataset.
+ * 
+ * Note that the expanded form loses precision when the instances are far from
+ * the origin compared to the distances between them, so near-ties may be
+ * decided differently than by the plain assignment.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class BlockedAssigner extends Assigner 
+{
+    // Number of instances in a block
+    static final int POINT_BLOCK = 32;
+    // Number of centroids in a block
+    static final int CENTROID_BLOCK = 32;
+    // Number of attributes in a tile
+    static final int TILE = 128;
+    
+    // Values of the dense dataset
+    double[] values;
+    // Squared norm of each instance
+    double[] norms;
+    // Dataset the squared norms were calculated for
+    DenseDataset norms_data;
+    
+    /**
+     * Creates a new blocked assigner that calculates the squared norms of the
+     * instances when a run starts.
+     */
+    public BlockedAssigner() {
+        
+    }
+    
+    /**
+     * Creates a new blocked assigner with cached squared norms of the
+     * instances, so runs on the same dataset can share them. The norms are
+     * only used for runs on that dataset and calculated again for others.
+     * 
+     * @param data The dataset the norms were calculated for
+     * @param norms Squared norm of each instance, see norms(DenseDataset)
+     */
+    public BlockedAssigner(DenseDataset data, double[] norms) {
+        this.norms_data = data;
+        this.norms = norms;
+    }
+    
+    /**
+     * Calculates the squared norm of each instance in a dense dataset.
+     * 
+     * @param data The dataset
+     * @return Squared norm of each instance
+     */
+    public static double[] norms(DenseDataset data) {
+        int d = data.dimensions();
+        double[] norms = new double[data.size()];
+        for (int i = 0; i < norms.length; i++) {
+            norms[i] = DistanceKernel.KERNEL.dot(data.values, i * d, data.values, i * d, d);
+        }
+        return norms;
+    }
+    
+    @Override
+    public void init(Dataset data, int k) {
+        if (!(data instanceof DenseDataset)) {
+            throw new IllegalArgumentException("Blocked assignment requires a dense dataset");
+        }
+        super.init(data, k);
+        values = ((DenseDataset)data).values;
+        
+        // Squared norms of all instances, unless cached for this dataset
+        if (norms == null || norms_data != data) {
+            norms_data = (DenseDataset)data;
+            norms = norms(norms_data);
+        }
+    }
+    
+    @Override
+    public void assign_range(int lo, int hi, double[] centroids, int[] labels, ClusterSums sums) {
+        DistanceKernel kernel = DistanceKernel.KERNEL;
+        double[] dots = new double[POINT_BLOCK * k];
+        
+        for (int p0 = lo; p0 < hi; p0 += POINT_BLOCK) {
+            int p1 = Math.min(p0 + POINT_BLOCK, hi);
+            Arrays.fill(dots, 0);
+            
+            // Dot products for this block of instances, one tile of attributes
+            // and one block of centroids at a time
+            for (int j0 = 0; j0 < d; j0 += TILE) {
+                int len = Math.min(TILE, d - j0);
+                for (int c0 = 0; c0 < k; c0 += CENTROID_BLOCK) {
+                    int c1 = Math.min(c0 + CENTROID_BLOCK, k);
+                    int i = p0;
+                    // Two instances and four centroids at a time
+                    for (; i + 1 < p1; i += 2) {
+                        int row0 = (i - p0) * k;
+                        int row1 = row0 + k;
+                        int xo0 = i * d + j0;
+                        int xo1 = xo0 + d;
+                        int c = c0;
+                        for (; c + 3 < c1; c += 4) {
+                            kernel.dot_2x4(values, xo0, xo1, centroids, c * d + j0, d, len, dots, row0 + c, row1 + c);
+                        }
+                        for (; c < c1; c++) {
+                            dots[row0 + c] += kernel.dot(values, xo0, centroids, c * d + j0, len);
+                            dots[row1 + c] += kernel.dot(values, xo1, centroids, c * d + j0, len);
+                        }
+                    }
+                    // Remaining instance
+                    for (; i < p1; i++) {
+                        int row = (i - p0) * k;
+                        int xo = i * d + j0;
+                        for (int c = c0; c < c1; c++) {
+                            dots[row + c] += kernel.dot(values, xo, centroids, c * d + j0, len);
+                        }
+                    }
+                }
+            }
+            
+            // Find the closest cluster for each instance
+            for (int i = p0; i < p1; i++) {
+                int row = (i - p0) * k;
+                double xn = norms[i];
+                int bestC = 0;
+                double bestD = Double.MAX_VALUE;
+                for (int c = 0; c < k; c++) {
+                    // Squared distance to cluster
+                    double dist = xn + c_norms[c] - 2 * dots[row + c];
+                    if (dist < bestD) {
+                        bestD = dist;
+                        bestC = c;
+                    }
+                }
+                
+                //Assign article to best cluster
+                assign(i, bestC, labels, sums);
+            }
+        }
+        sums.distances += (long)(hi - lo) * k;
+    }
+}
@@ -0,0 +1,83 @@
+package kmeans;
+
+/**
+ * Base class for assigners that use the triangle inequality to skip distance
+ * calculations. Bounds on the distance from each instance to the centroids are
+ * kept between iterations and loosened by how far the centroids moved.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public abstract class BoundedAssigner extends Assigner 
+{
+    // Bounds must beat each other by this relative margin before a distance is
+    // skipped, so rounding errors never change an assignment
+    static final double SAFE = 1 + 1e-9;
+    
+    // Centroids in the previous iteration
+    double[] prev;
+    // Distance each centroid moved since the previous iteration
+    double[] shift;
+    // Half the distance between each pair of centroids
+    double[] half_cc;
+    // Half the distance from each centroid to its closest other centroid
+    double[] half_min;
+    // Index of the centroid that moved the longest
+    int max_c;
+    // Longest and second longest distance a centroid moved
+    double max_shift, second_shift;
+    
+    @Override
+    public void init(Dataset data, int k) {
+        super.init(data, k);
+        prev = null;
+        shift = new double[k];
+        half_cc = new double[k * k];
+        half_min = new double[k];
+    }
+    
+    @Override
+    public void prepare(double[] centroids) {
+        super.prepare(centroids);
+        
+        // How far each centroid moved
+        max_c = 0;
+        max_shift = 0;
+        second_shift = 0;
+        for (int c = 0; c < k; c++) {
+            shift[c] = prev == null ? 0 : Dataset.euclidean(prev, c * d, centroids, c * d, d);
+            if (shift[c] > max_shift) {
+                second_shift = max_shift;
+                max_shift = shift[c];
+                max_c = c;
+            }
+            else if (shift[c] > second_shift) {
+                second_shift = shift[c];
+            }
+        }
+        prev = centroids.clone();
+        
+        // Distances between centroids
+        for (int c = 0; c < k; c++) {
+            half_min[c] = Double.MAX_VALUE;
+        }
+        for (int c1 = 0; c1 < k; c1++) {
+            for (int c2 = c1 + 1; c2 < k; c2++) {
+                double hd = 0.5 * Dataset.euclidean(centroids, c1 * d, centroids, c2 * d, d);
+                half_cc[c1 * k + c2] = hd;
+                half_cc[c2 * k + c1] = hd;
+                half_min[c1] = Math.min(half_min[c1], hd);
+                half_min[c2] = Math.min(half_min[c2], hd);
+            }
+        }
+    }
+    
+    /**
+     * Returns the longest distance any centroid other than c moved.
+     * 
+     * @param c Index of the centroid
+     * @return Longest distance moved by another centroid
+     */
+    protected double max_shift_except(int c) {
+        return c == max_c ? second_shift : max_shift;
+    }
+}
@@ -0,0 +1,239 @@
+package kmeans;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Random;
+
+/**
+ * State of a k-means run after an iteration, stored in a compact binary file
+ * so the run can be resumed. The file is a little-endian header followed by
+ * the serialized randomizer, the centroids and the labels:
+ *
+ * <pre>
+ * bytes 0-3    magic "KMCP"
+ * bytes 4-7    format version (1)
+ * bytes 8-11   number of iterations performed
+ * bytes 12-15  number of clusters k
+ * bytes 16-19  number of attributes d
+ * bytes 20-27  number of instances n
+ * bytes 28-31  length r of the serialized randomizer
+ * r bytes      serialized randomizer
+ * k*d doubles  centroids, row-major
+ * n ints       cluster index for each instance
+ * </pre>
+ *
+ * Files are written to a temporary file that is moved over the old checkpoint,
+ * so a crash while writing never leaves a broken checkpoint behind.
+ *
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class Checkpoint
+{
+    // Magic bytes at the start of the file
+    static final int MAGIC = 0x50434D4B;
+    // Format version
+    static final int VERSION = 1;
+    // Size of the header in bytes
+    static final int HEADER = 32;
+
+    // Number of iterations performed
+    public int iteration;
+    // Number of attributes
+    public int d;
+    // Centroids, one row of attributes per cluster
+    public double[] centroids;
+    // Cluster index for each instance
+    public int[] labels;
+    // Serialized state of the randomizer
+    byte[] rng;
+
+    /**
+     * Creates a new checkpoint. The arrays are not copied.
+     *
+     * @param iteration Number of iterations performed
+     * @param d Number of attributes
+     * @param centroids Centroids, one row of attributes per cluster
+     * @param labels Cluster index for each instance
+     * @param rnd Randomizer of the run
+     */
+    public Checkpoint(int iteration, int d, double[] centroids, int[] labels, Random rnd) {
+        this.iteration = iteration;
+        this.d = d;
+        this.centroids = centroids;
+        this.labels = labels;
+        this.rng = serialize(rnd);
+    }
+
+    /**
+     * Creates a checkpoint read from a file.
+     */
+    private Checkpoint() {
+
+    }
+
+    /**
+     * Returns the number of clusters.
+     *
+     * @return Number of clusters
+     */
+    public int k() {
+        return centroids.length / d;
+    }
+
+    /**
+     * Returns a randomizer in the state it had when the checkpoint was made.
+     *
+     * @return The randomizer
+     * @throws IOException If the randomizer can't be restored
+     */
+    public Random random() throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(rng))) {
+            return (Random)in.readObject();
+        }
+        catch (ClassNotFoundException | ClassCastException ex) {
+            throw new IOException("Can't restore randomizer", ex);
+        }
+    }
+
+    /**
+     * Writes a checkpoint atomically: the checkpoint is written and synced to a
+     * temporary file next to the target, which then replaces the target.
+     *
+     * @param file The checkpoint file
+     * @param cp The checkpoint
+     * @throws IOException If the file can't be written
+     */
+    public static void write(Path file, Checkpoint cp) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            buf.putInt(MAGIC).putInt(VERSION).putInt(cp.iteration).putInt(cp.k()).putInt(cp.d);
+            buf.putLong(cp.labels.length).putInt(cp.rng.length);
+            for (byte b : cp.rng) {
+                if (!buf.hasRemaining()) flush(ch, buf);
+                buf.put(b);
+            }
+            for (double v : cp.centroids) {
+                if (buf.remaining() < 8) flush(ch, buf);
+                buf.putDouble(v);
+            }
+            for (int l : cp.labels) {
+                if (buf.remaining() < 4) flush(ch, buf);
+                buf.putInt(l);
+            }
+            flush(ch, buf);
+            ch.force(true);
+        }
+
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads a checkpoint.
+     *
+     * @param file The checkpoint file
+     * @return The checkpoint
+     * @throws IOException If the file can't be read or is not a checkpoint
+     */
+    public static Checkpoint read(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            buf.limit(0);
+
+            fill(ch, buf, HEADER, file);
+            if (buf.getInt() != MAGIC) {
+                throw new IOException("Not a checkpoint file: " + file);
+            }
+            int version = buf.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version + " in " + file);
+            }
+            Checkpoint cp = new Checkpoint();
+            cp.iteration = buf.getInt();
+            int k = buf.getInt();
+            cp.d = buf.getInt();
+            long n = buf.getLong();
+            int r = buf.getInt();
+            if (k < 1 || cp.d < 1 || n < 0 || n > Integer.MAX_VALUE || r < 0) {
+                throw new IOException("Invalid checkpoint header in " + file);
+            }
+
+            cp.rng = new byte[r];
+            for (int i = 0; i < r; i++) {
+                fill(ch, buf, 1, file);
+                cp.rng[i] = buf.get();
+            }
+            cp.centroids = new double[k * cp.d];
+            for (int i = 0; i < cp.centroids.length; i++) {
+                fill(ch, buf, 8, file);
+                cp.centroids[i] = buf.getDouble();
+            }
+            cp.labels = new int[(int)n];
+            for (int i = 0; i < cp.labels.length; i++) {
+                fill(ch, buf, 4, file);
+                cp.labels[i] = buf.getInt();
+            }
+            return cp;
+        }
+    }
+
+    /**
+     * Makes sure a buffer has at least a number of bytes left to read,
+     * reading more from the channel if needed.
+     *
+     * @param ch The channel
+     * @param buf The buffer, in read mode
+     * @param bytes Number of bytes needed
+     * @param file The file, for error messages
+     * @throws IOException If the file ends too early
+     */
+    private static void fill(FileChannel ch, ByteBuffer buf, int bytes, Path file) throws IOException {
+        if (buf.remaining() >= bytes) return;
+        buf.compact();
+        while (buf.position() < bytes) {
+            if (ch.read(buf) < 0) {
+                throw new IOException("Truncated checkpoint " + file);
+            }
+        }
+        buf.flip();
+    }
+
+    /**
+     * Writes the contents of a buffer to a channel and clears the buffer.
+     *
+     * @param ch The channel
+     * @param buf The buffer
+     * @throws IOException If the buffer can't be written
+     */
+    private static void flush(FileChannel ch, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            ch.write(buf);
+        }
+        buf.clear();
+    }
+
+    /**
+     * Serializes a randomizer.
+     *
+     * @param rnd The randomizer
+     * @return Serialized state
+     */
+    private static byte[] serialize(Random rnd) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(rnd);
+        }
+        catch (IOException ex) {
+            throw new IllegalArgumentException("Randomizer can't be serialized", ex);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,118 @@
+package kmeans;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes checkpoints of a k-means run every N iterations or T seconds. The
+ * clustering thread only copies the state; the file is written on a
+ * background thread. If the previous checkpoint is still being written when a
+ * new one is due, the new one is skipped instead of queued, so a slow disk
+ * never holds up the run.
+ *
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class Checkpointer implements Closeable
+{
+    // The checkpoint file
+    Path file;
+    // Checkpoint every this many iterations (0 to disable)
+    int every;
+    // Checkpoint when this many nanoseconds passed since the last one (0 to disable)
+    long interval;
+    // Time of the last checkpoint
+    long last;
+    // Thread writing the checkpoints
+    ExecutorService writer;
+    // True while a checkpoint is being written
+    AtomicBoolean busy = new AtomicBoolean();
+    // First write error
+    volatile IOException error;
+    // Number of checkpoints written
+    volatile int written;
+
+    /**
+     * Creates a new checkpointer.
+     *
+     * @param file The checkpoint file
+     * @param every Checkpoint every this many iterations (0 to disable)
+     * @param seconds Checkpoint when this many seconds passed since the last one (0 to disable)
+     */
+    public Checkpointer(Path file, int every, double seconds) {
+        this.file = file;
+        this.every = every;
+        this.interval = (long)(seconds * 1e9);
+        this.last = System.nanoTime();
+        writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "kmeans-checkpoint");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Called after each iteration. Copies the state and writes it in the
+     * background if a checkpoint is due.
+     *
+     * @param iteration Number of iterations performed
+     * @param d Number of attributes
+     * @param centroids Centroids, one row of attributes per cluster
+     * @param labels Cluster index for each instance
+     * @param rnd Randomizer of the run
+     */
+    public void iteration(int iteration, int d, double[] centroids, int[] labels, Random rnd) {
+        long now = System.nanoTime();
+        boolean due = (every > 0 && iteration % every == 0) || (interval > 0 && now - last >= interval);
+        if (!due) return;
+
+        // Skip if the previous checkpoint is still being written
+        if (!busy.compareAndSet(false, true)) return;
+        last = now;
+
+        Checkpoint cp = new Checkpoint(iteration, d, centroids.clone(), labels.clone(), rnd);
+        writer.execute(() -> {
+            try {
+                Checkpoint.write(file, cp);
+                written++;
+            }
+            catch (IOException ex) {
+                if (error == null) error = ex;
+            }
+            finally {
+                busy.set(false);
+            }
+        });
+    }
+
+    /**
+     * Returns the number of checkpoints written.
+     *
+     * @return Number of checkpoints
+     */
+    public int written() {
+        return written;
+    }
+
+    /**
+     * Waits for the last checkpoint to be written and stops the writer thread.
+     *
+     * @throws IOException If a checkpoint couldn't be written
+     */
+    @Override
+    public void close() throws IOException {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing checkpoint");
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
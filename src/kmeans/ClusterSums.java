@@ -0,0 +1,223 @@
+package kmeans;
+
+import java.util.Arrays;
+
+/**
+ * Per-cluster sums and counts gathered during the assignment step. Each worker
+ * thread fills its own instance for the rows it assigns, and the partial sums
+ * are merged once per iteration. The centroids can then be recalculated without
+ * another pass over the dataset.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class ClusterSums 
+{
+    // Number of clusters
+    int k;
+    // Number of attributes
+    int d;
+    // Sum of all instances belonging to each cluster, one row per cluster
+    double[] sum;
+    // Number of instances belonging to each cluster
+    int[] count;
+    // Number of instances that changed cluster
+    int changed;
+    // Indices of the instances that changed cluster (null if not tracked)
+    int[] moved;
+    // Number of distances between instances and centroids calculated
+    long distances;
+    // Number of ranges merged into these sums, and their total and max time
+    // in nanoseconds
+    int ranges;
+    long range_nanos;
+    long max_range_nanos;
+    
+    /**
+     * Creates new empty sums.
+     * 
+     * @param k Number of clusters
+     * @param d Number of attributes
+     */
+    public ClusterSums(int k, int d) {
+        this.k = k;
+        this.d = d;
+        sum = new double[k * d];
+        count = new int[k];
+    }
+    
+    /**
+     * Assigns an instance to a cluster.
+     * 
+     * @param data The dataset
+     * @param i Index of the instance
+     * @param c Index of the cluster
+     */
+    public void add(Dataset data, int i, int c) {
+        data.add_to(i, sum, c * d);
+        count[c]++;
+    }
+    
+    /**
+     * Counts an instance that changed cluster.
+     * 
+     * @param i Index of the instance
+     */
+    public void changed(int i) {
+        if (moved != null) {
+            if (changed == moved.length) {
+                moved = Arrays.copyOf(moved, Math.max(16, changed * 2));
+            }
+            moved[changed] = i;
+        }
+        changed++;
+    }
+    
+    /**
+     * Keeps the indices of the instances that changed cluster, and not only
+     * their number.
+     */
+    public void track_moved() {
+        if (moved == null) {
+            moved = new int[16];
+        }
+    }
+    
+    /**
+     * Assigns a group of instances to a cluster by their precalculated sum.
+     * 
+     * @param c Index of the cluster
+     * @param s Array with the sum of the instances
+     * @param off Offset of the sum in the array
+     * @param cnt Number of instances
+     */
+    public void add_sum(int c, double[] s, int off, int cnt) {
+        for (int j = 0; j < d; j++) {
+            sum[c * d + j] += s[off + j];
+        }
+        count[c] += cnt;
+    }
+    
+    /**
+     * Returns the sum of squared distances from each instance to the mean of
+     * its cluster. Uses the identity sum ||x - mu_c||^2 = sum ||x - m||^2 -
+     * sum n_c ||mu_c - m||^2, so only the sums are needed.
+     * 
+     * @param mean Mean of all instances
+     * @param spread Sum of squared distances from each instance to the mean
+     * @return The inertia
+     */
+    public double inertia(double[] mean, double spread) {
+        double between = 0;
+        for (int c = 0; c < k; c++) {
+            if (count[c] == 0) continue;
+            double sq = 0;
+            for (int j = 0; j < d; j++) {
+                double diff = sum[c * d + j] / count[c] - mean[j];
+                sq += diff * diff;
+            }
+            between += count[c] * sq;
+        }
+        return Math.max(spread - between, 0);
+    }
+    
+    /**
+     * Moves an instance from one cluster to another.
+     * 
+     * @param data The dataset
+     * @param i Index of the instance
+     * @param from Index of the current cluster
+     * @param to Index of the new cluster
+     */
+    public void move(Dataset data, int i, int from, int to) {
+        data.sub_from(i, sum, from * d);
+        data.add_to(i, sum, to * d);
+        count[from]--;
+        count[to]++;
+    }
+    
+    /**
+     * Adds the sums from another partial result to this one.
+     * 
+     * @param o The other partial result
+     */
+    public void merge(ClusterSums o) {
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] += o.sum[i];
+        }
+        for (int c = 0; c < k; c++) {
+            count[c] += o.count[c];
+        }
+        if (moved != null && o.moved != null) {
+            for (int m = 0; m < o.changed; m++) {
+                changed(o.moved[m]);
+            }
+        }
+        else {
+            changed += o.changed;
+        }
+        distances += o.distances;
+        ranges += o.ranges;
+        range_nanos += o.range_nanos;
+        max_range_nanos = Math.max(max_range_nanos, o.max_range_nanos);
+    }
+    
+    /**
+     * Recalculates the centroids to be in the center of the clusters. The
+     * centroid of an empty cluster is left where it is.
+     * 
+     * @param centroids Centroids array, one row of attributes per cluster
+     * @param max_step Max distance a centroid moves (0 for no limit)
+     * @return Longest distance any centroid moved
+     */
+    public double recalc_centers(double[] centroids, double max_step) {
+        return recalc_centers(centroids, max_step, false);
+    }
+    
+    /**
+     * Recalculates the centroids to be in the center of the clusters,
+     * optionally scaled back to unit length for spherical k-means. The
+     * centroid of an empty cluster is left where it is.
+     * 
+     * @param centroids Centroids array, one row of attributes per cluster
+     * @param max_step Max distance a centroid moves (0 for no limit)
+     * @param normalize True to scale the centroids to unit length
+     * @return Longest distance any centroid moved
+     */
+    public double recalc_centers(double[] centroids, double max_step, boolean normalize) {
+        double[] old = new double[d];
+        double shift = 0;
+        
+        for (int c = 0; c < k; c++) {
+            int off = c * d;
+            if (count[c] == 0) continue;
+            
+            // Previous position (used for visualization)
+            System.arraycopy(centroids, off, old, 0, d);
+            
+            // Iterate over all attributes to calculate average word count
+            for (int i = 0; i < d; i++) {
+                centroids[off + i] = sum[off + i] / count[c];
+            }
+            if (normalize) {
+                Dataset.normalize(centroids, off, d);
+            }
+            
+            // For visualization, limit the length of the steps instead of moving
+            // directly to the center.
+            double m = Dataset.euclidean(old, 0, centroids, off, d);
+            if (max_step > 0 && m > max_step) {
+                for (int i = 0; i < d; i++) {
+                    centroids[off + i] = old[i] + max_step * (centroids[off + i] - old[i]) / m;
+                }
+                m = max_step;
+                if (normalize) {
+                    Dataset.normalize(centroids, off, d);
+                    m = Dataset.euclidean(old, 0, centroids, off, d);
+                }
+            }
+            shift = Math.max(shift, m);
+        }
+        
+        return shift;
+    }
+}
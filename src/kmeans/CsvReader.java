@@ -0,0 +1,526 @@
+package kmeans;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Reads numeric CSV files into a dense dataset. The file is split into byte
+ * ranges aligned to line boundaries, and the ranges are parsed in parallel
+ * straight from memory-mapped bytes, without creating a String per field. A
+ * first pass counts the rows in each range, so each range knows where its rows
+ * go and the values are written directly into the dataset.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class CsvReader 
+{
+    // Max number of bytes in one range, so each range can be mapped at once
+    static final long MAX_RANGE = 1L << 30;
+    // Powers of ten that are exact as doubles
+    static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    
+    // Field delimiter
+    byte delimiter = ',';
+    // If true, the first line is a header with column names
+    boolean header = false;
+    // Indexes of the columns to read (null for all)
+    int[] columns;
+    // Names of the columns to read (null for all, requires a header)
+    String[] column_names;
+    // Pool parsing the ranges
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+    
+    /**
+     * Sets the field delimiter.
+     * 
+     * @param delimiter The delimiter
+     */
+    public void set_delimiter(char delimiter) {
+        this.delimiter = (byte)delimiter;
+    }
+    
+    /**
+     * Sets if the first line is a header with column names.
+     * 
+     * @param header True if the file has a header
+     */
+    public void set_header(boolean header) {
+        this.header = header;
+    }
+    
+    /**
+     * Selects the columns to read, in the order they shall appear in the dataset.
+     * 
+     * @param columns Column indexes, starting at 0
+     * @throws IllegalArgumentException If an index is negative or selected more than once
+     */
+    public void set_columns(int... columns) {
+        Set<Integer> seen = new HashSet<>();
+        for (int c : columns) {
+            if (c < 0) {
+                throw new IllegalArgumentException("Invalid column index " + c);
+            }
+            if (!seen.add(c)) {
+                throw new IllegalArgumentException("Column " + c + " is selected more than once");
+            }
+        }
+        this.columns = columns;
+        this.column_names = null;
+    }
+    
+    /**
+     * Selects the columns to read by name. The file must have a header.
+     * 
+     * @param names Column names
+     * @throws IllegalArgumentException If a name is selected more than once
+     */
+    public void set_columns(String... names) {
+        Set<String> seen = new HashSet<>();
+        for (String name : names) {
+            if (!seen.add(name)) {
+                throw new IllegalArgumentException("Column " + name + " is selected more than once");
+            }
+        }
+        this.column_names = names;
+        this.columns = null;
+    }
+    
+    /**
+     * Sets the pool parsing the ranges.
+     * 
+     * @param pool The pool
+     */
+    public void set_pool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+    
+    /**
+     * Reads a CSV file.
+     * 
+     * @param file The file
+     * @return The dataset
+     * @throws IOException If the file can't be read or parsed
+     */
+    public DenseDataset read(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            
+            // Header
+            long start = 0;
+            String[] names = null;
+            if (header) {
+                byte[] line = read_line(ch, 0);
+                start = Math.min(size, line.length + 1);
+                names = split(line);
+            }
+            
+            // Map dataset attributes to columns
+            int[] cols = columns;
+            if (column_names != null) {
+                if (names == null) {
+                    throw new IOException("Columns can only be selected by name in a file with header");
+                }
+                cols = new int[column_names.length];
+                for (int i = 0; i < cols.length; i++) {
+                    cols[i] = Arrays.asList(names).indexOf(column_names[i]);
+                    if (cols[i] < 0) {
+                        throw new IOException("No column named " + column_names[i] + " in " + file);
+                    }
+                    if (Arrays.asList(names).lastIndexOf(column_names[i]) != cols[i]) {
+                        throw new IOException("More than one column named " + column_names[i] + " in " + file);
+                    }
+                }
+            }
+            if (cols == null) {
+                int no_cols = split(read_line(ch, start)).length;
+                cols = new int[no_cols];
+                for (int i = 0; i < no_cols; i++) {
+                    cols[i] = i;
+                }
+            }
+            int d = cols.length;
+            int max_col = 0;
+            for (int c : cols) {
+                max_col = Math.max(max_col, c);
+            }
+            int[] col_map = new int[max_col + 1];
+            Arrays.fill(col_map, -1);
+            for (int i = 0; i < d; i++) {
+                col_map[cols[i]] = i;
+            }
+            
+            // Split into ranges aligned to line boundaries
+            long len = size - start;
+            int no_ranges = (int)Math.max(pool.getParallelism() * 4L, (len + MAX_RANGE - 1) / MAX_RANGE);
+            no_ranges = (int)Math.max(1, Math.min(no_ranges, len / 4096 + 1));
+            long[] bounds = new long[no_ranges + 1];
+            bounds[0] = start;
+            bounds[no_ranges] = size;
+            for (int r = 1; r < no_ranges; r++) {
+                bounds[r] = Math.max(bounds[r - 1], Math.min(size, next_line(ch, start + len * r / no_ranges)));
+            }
+            
+            // Map ranges and count rows
+            List<Range> ranges = new ArrayList<>();
+            for (int r = 0; r < no_ranges; r++) {
+                if (bounds[r + 1] > bounds[r]) {
+                    ranges.add(new Range(ch.map(FileChannel.MapMode.READ_ONLY, bounds[r], bounds[r + 1] - bounds[r])));
+                }
+            }
+            run(ranges, Range::count);
+            
+            // Row offset of each range
+            long n = 0;
+            for (Range r : ranges) {
+                r.first_row = (int)n;
+                n += r.rows;
+            }
+            if (n * d > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large for an in-memory dataset, convert it to a binary dataset file");
+            }
+            
+            // Parse
+            DenseDataset data = new DenseDataset((int)n, d);
+            run(ranges, r -> r.parse(data.values, d, col_map));
+            return data;
+        }
+    }
+    
+    /**
+     * Checks if the first line of a CSV file looks like a header, i.e. if its
+     * first field is not a number.
+     * 
+     * @param file The file
+     * @param delimiter Field delimiter
+     * @return True if the file seems to have a header
+     * @throws IOException If the file can't be read
+     */
+    public static boolean detect_header(Path file, char delimiter) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            CsvReader r = new CsvReader();
+            r.set_delimiter(delimiter);
+            String[] first = r.split(r.read_line(ch, 0));
+            try {
+                Double.parseDouble(first[0].trim());
+                return false;
+            }
+            catch (NumberFormatException e) {
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Runs a task for each range on the pool.
+     * 
+     * @param ranges The ranges
+     * @param task The task
+     * @throws IOException If a task fails
+     */
+    private void run(List<Range> ranges, RangeTask task) throws IOException {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Range r : ranges) {
+            tasks.add(() -> {
+                task.run(r);
+                return null;
+            });
+        }
+        for (Future<Void> f : pool.invokeAll(tasks)) {
+            try {
+                f.get();
+            }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException)e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+            catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+        }
+    }
+    
+    /**
+     * Task run on a range.
+     */
+    private interface RangeTask {
+        void run(Range r) throws IOException;
+    }
+    
+    /**
+     * Reads one line, without the line break.
+     * 
+     * @param ch The channel
+     * @param pos Position of the line
+     * @return The line
+     * @throws IOException If the file can't be read
+     */
+    private byte[] read_line(FileChannel ch, long pos) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        while (ch.read(buf, pos) > 0) {
+            buf.flip();
+            while (buf.hasRemaining()) {
+                byte b = buf.get();
+                if (b == '\n') {
+                    return out.toByteArray();
+                }
+                out.write(b);
+            }
+            pos += buf.limit();
+            buf.clear();
+        }
+        return out.toByteArray();
+    }
+    
+    /**
+     * Finds the start of the line after a position.
+     * 
+     * @param ch The channel
+     * @param pos The position
+     * @return Position after the next line break, or the file size if there is none
+     * @throws IOException If the file can't be read
+     */
+    private long next_line(FileChannel ch, long pos) throws IOException {
+        return pos + read_line(ch, pos).length + 1;
+    }
+    
+    /**
+     * Splits a line into trimmed fields.
+     * 
+     * @param line The line
+     * @return The fields
+     */
+    private String[] split(byte[] line) {
+        String s = new String(line, StandardCharsets.UTF_8);
+        String[] fields = s.split(java.util.regex.Pattern.quote(String.valueOf((char)delimiter)), -1);
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = fields[i].trim();
+            if (fields[i].length() >= 2 && fields[i].startsWith("\"") && fields[i].endsWith("\"")) {
+                fields[i] = fields[i].substring(1, fields[i].length() - 1);
+            }
+        }
+        return fields;
+    }
+    
+    /**
+     * A byte range of the file, starting at the start of a line and ending after
+     * a line break or at the end of the file.
+     */
+    private class Range {
+        // The mapped bytes
+        MappedByteBuffer buf;
+        // Number of rows in this range
+        int rows;
+        // Index of the first row in the dataset
+        int first_row;
+        
+        /**
+         * New range.
+         * 
+         * @param buf The mapped bytes
+         */
+        public Range(MappedByteBuffer buf) {
+            this.buf = buf;
+        }
+        
+        /**
+         * Counts the lines in the range that are not blank.
+         */
+        void count() {
+            int end = buf.limit();
+            boolean empty = true;
+            for (int p = 0; p < end; p++) {
+                byte b = buf.get(p);
+                if (b == '\n') {
+                    if (!empty) rows++;
+                    empty = true;
+                }
+                else if (!blank(b)) {
+                    empty = false;
+                }
+            }
+            if (!empty) rows++;
+        }
+        
+        /**
+         * Parses the rows in the range.
+         * 
+         * @param values Values of the dataset
+         * @param d Number of attributes
+         * @param col_map Attribute index for each column (-1 to skip the column)
+         * @throws IOException If a row can't be parsed
+         */
+        void parse(double[] values, int d, int[] col_map) throws IOException {
+            int end = buf.limit();
+            int row = first_row;
+            int p = 0;
+            while (p < end) {
+                // Skip blank lines, the same lines that are not counted
+                byte b;
+                int q = p;
+                while (q < end && blank(buf.get(q))) {
+                    q++;
+                }
+                if (q == end || buf.get(q) == '\n') {
+                    p = q + 1;
+                    continue;
+                }
+                
+                int found = 0;
+                int col = 0;
+                int off = row * d;
+                while (true) {
+                    // Find end of field
+                    int fs = p;
+                    while (p < end && (b = buf.get(p)) != delimiter && b != '\n' && b != '\r') {
+                        p++;
+                    }
+                    
+                    // Parse field if selected
+                    if (col < col_map.length && col_map[col] >= 0) {
+                        values[off + col_map[col]] = parse_double(buf, fs, p, row);
+                        found++;
+                    }
+                    
+                    if (p < end && buf.get(p) == delimiter) {
+                        p++;
+                        col++;
+                    }
+                    else {
+                        break;
+                    }
+                }
+                if (found < d) {
+                    throw new IOException("Too few columns in row " + (row + 1));
+                }
+                
+                // Skip line break
+                while (p < end && ((b = buf.get(p)) == '\r' || b == '\n')) {
+                    p++;
+                    if (b == '\n') break;
+                }
+                row++;
+            }
+        }
+    }
+    
+    /**
+     * Checks if a byte is whitespace that doesn't end a line. Lines with only
+     * such bytes are blank and skipped.
+     * 
+     * @param b The byte
+     * @return True if the byte is a space, tab or carriage return
+     */
+    static boolean blank(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+    
+    /**
+     * Parses a number. Numbers with at most 15 significant digits and a small
+     * exponent are parsed exactly by scaling the digits with an exact power of
+     * ten. Other numbers fall back to Double.parseDouble.
+     * 
+     * @param buf The bytes
+     * @param start Start of the field
+     * @param end End of the field (exclusive)
+     * @param row Row index, for error messages
+     * @return The number
+     * @throws IOException If the field is not a number
+     */
+    static double parse_double(ByteBuffer buf, int start, int end, int row) throws IOException {
+        int p = start;
+        
+        // Trim whitespace and quotes
+        while (p < end && (buf.get(p) == ' ' || buf.get(p) == '"')) p++;
+        while (end > p && (buf.get(end - 1) == ' ' || buf.get(end - 1) == '"')) end--;
+        int s = p;
+        
+        boolean neg = false;
+        if (p < end && (buf.get(p) == '-' || buf.get(p) == '+')) {
+            neg = buf.get(p) == '-';
+            p++;
+        }
+        
+        long m = 0;
+        int digits = 0;
+        int exp = 0;
+        boolean any = false;
+        
+        // Integer part
+        byte b;
+        while (p < end && (b = buf.get(p)) >= '0' && b <= '9') {
+            if (m != 0 || b != '0') {
+                if (digits < 18) m = m * 10 + (b - '0');
+                else exp++;
+                digits++;
+            }
+            any = true;
+            p++;
+        }
+        // Fraction
+        if (p < end && buf.get(p) == '.') {
+            p++;
+            while (p < end && (b = buf.get(p)) >= '0' && b <= '9') {
+                if (m != 0 || b != '0') {
+                    if (digits < 18) {
+                        m = m * 10 + (b - '0');
+                        exp--;
+                    }
+                    digits++;
+                }
+                else {
+                    exp--;
+                }
+                any = true;
+                p++;
+            }
+        }
+        // Exponent
+        if (any && p < end && (buf.get(p) == 'e' || buf.get(p) == 'E')) {
+            p++;
+            boolean eneg = false;
+            if (p < end && (buf.get(p) == '-' || buf.get(p) == '+')) {
+                eneg = buf.get(p) == '-';
+                p++;
+            }
+            int e = 0;
+            boolean edig = false;
+            while (p < end && (b = buf.get(p)) >= '0' && b <= '9') {
+                if (e < 10000) e = e * 10 + (b - '0');
+                edig = true;
+                p++;
+            }
+            if (!edig) any = false;
+            exp += eneg ? -e : e;
+        }
+        
+        // Fast path
+        if (any && p == end && digits <= 15 && exp >= -22 && exp <= 22) {
+            double v = exp >= 0 ? m * POW10[exp] : m / POW10[-exp];
+            return neg ? -v : v;
+        }
+        
+        // Slow path for long numbers, NaN, Infinity etc
+        byte[] bytes = new byte[end - s];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buf.get(s + i);
+        }
+        String str = new String(bytes, StandardCharsets.ISO_8859_1);
+        try {
+            return Double.parseDouble(str);
+        }
+        catch (NumberFormatException e) {
+            throw new IOException("Invalid number '" + str + "' in row " + (row + 1));
+        }
+    }
+}
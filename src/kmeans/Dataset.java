@@ -0,0 +1,264 @@
+package kmeans;
+
+/**
+ * A dataset of n instances with d attributes each. Instances are referenced by
+ * their row index instead of by objects, so implementations can store all values
+ * in flat primitive arrays.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public abstract class Dataset 
+{
+    // Number of instances
+    int n;
+    // Number of attributes
+    int d;
+    
+    /**
+     * Creates a new dataset.
+     * 
+     * @param n Number of instances
+     * @param d Number of attributes
+     */
+    public Dataset(int n, int d) {
+        this.n = n;
+        this.d = d;
+    }
+    
+    /**
+     * Returns the number of instances.
+     * 
+     * @return Number of instances
+     */
+    public int size() {
+        return n;
+    }
+    
+    /**
+     * Returns the number of attributes for each instance.
+     * 
+     * @return Number of attributes
+     */
+    public int dimensions() {
+        return d;
+    }
+    
+    /**
+     * Returns the value of an attribute.
+     * 
+     * @param i Index of the instance
+     * @param j Index of the attribute
+     * @return Attribute value
+     */
+    public abstract double get(int i, int j);
+    
+    /**
+     * Squared Euclidean distance between an instance and a centroid.
+     * 
+     * @param i Index of the instance
+     * @param c Centroids array
+     * @param off Offset of the centroid in the centroids array
+     * @return Squared Euclidean distance
+     */
+    public double sq_euclidean(int i, double[] c, int off) {
+        double sum = 0;
+        for (int j = 0; j < d; j++) {
+            double diff = get(i, j) - c[off + j];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+    
+    /**
+     * Squared Euclidean distance between an instance and a centroid with a
+     * known squared norm. Datasets that store instances sparsely use the norm
+     * to only touch the non-zero values; others ignore it.
+     * 
+     * @param i Index of the instance
+     * @param c Centroids array
+     * @param off Offset of the centroid in the centroids array
+     * @param c_norm Squared norm of the centroid
+     * @return Squared Euclidean distance
+     */
+    public double sq_euclidean(int i, double[] c, int off, double c_norm) {
+        return sq_euclidean(i, c, off);
+    }
+    
+    /**
+     * Squared Euclidean distances between an instance and all centroids.
+     * 
+     * @param i Index of the instance
+     * @param c Centroids, one row of attributes per cluster
+     * @param k Number of centroids
+     * @param out Squared distance to each centroid
+     */
+    public void sq_euclidean_all(int i, double[] c, int k, double[] out) {
+        for (int cl = 0; cl < k; cl++) {
+            out[cl] = sq_euclidean(i, c, cl * d);
+        }
+    }
+    
+    /**
+     * Squared Euclidean distances between an instance and all centroids with
+     * known squared norms.
+     * 
+     * @param i Index of the instance
+     * @param c Centroids, one row of attributes per cluster
+     * @param k Number of centroids
+     * @param c_norms Squared norm of each centroid
+     * @param out Squared distance to each centroid
+     */
+    public void sq_euclidean_all(int i, double[] c, int k, double[] c_norms, double[] out) {
+        sq_euclidean_all(i, c, k, out);
+    }
+    
+    /**
+     * Dot product between an instance and a centroid.
+     * 
+     * @param i Index of the instance
+     * @param c Centroids array
+     * @param off Offset of the centroid in the centroids array
+     * @return Dot product
+     */
+    public double dot(int i, double[] c, int off) {
+        double sum = 0;
+        for (int j = 0; j < d; j++) {
+            sum += get(i, j) * c[off + j];
+        }
+        return sum;
+    }
+    
+    /**
+     * Adds the values of an instance to a sum.
+     * 
+     * @param i Index of the instance
+     * @param sum Sum array
+     * @param off Offset in the sum array
+     */
+    public void add_to(int i, double[] sum, int off) {
+        for (int j = 0; j < d; j++) {
+            sum[off + j] += get(i, j);
+        }
+    }
+    
+    /**
+     * Subtracts the values of an instance from a sum.
+     * 
+     * @param i Index of the instance
+     * @param sum Sum array
+     * @param off Offset in the sum array
+     */
+    public void sub_from(int i, double[] sum, int off) {
+        for (int j = 0; j < d; j++) {
+            sum[off + j] -= get(i, j);
+        }
+    }
+    
+    /**
+     * Returns a copy of the dataset with each instance scaled to unit length,
+     * for spherical k-means. Instances with all values zero are left as they
+     * are. The copy is a dense dataset on the heap, unless the dataset keeps
+     * its values elsewhere and overrides this.
+     * 
+     * @return The normalized dataset
+     */
+    public Dataset normalized() {
+        DenseDataset res = new DenseDataset(n, d);
+        for (int i = 0; i < n; i++) {
+            add_to(i, res.values, i * d);
+            normalize(res.values, i * d, d);
+        }
+        return res;
+    }
+    
+    /**
+     * Number of values in a dataset stored in one array.
+     * 
+     * @param n Number of instances
+     * @param d Number of attributes
+     * @return Number of values
+     * @throws IllegalArgumentException If there are too many values for one array
+     */
+    static int values(int n, int d) {
+        try {
+            return Math.multiplyExact(n, d);
+        }
+        catch (ArithmeticException ex) {
+            throw new IllegalArgumentException(n + "x" + d + " values don't fit in one array, use OffHeapDataset");
+        }
+    }
+    
+    /**
+     * Number of instances in a dataset stored in one array.
+     * 
+     * @param length Number of values in the array
+     * @param d Number of attributes
+     * @return Number of instances
+     * @throws IllegalArgumentException If d is not positive or the values are not a whole number of instances
+     */
+    static int rows(int length, int d) {
+        if (d <= 0) {
+            throw new IllegalArgumentException("Number of attributes must be positive, got " + d);
+        }
+        if (length % d != 0) {
+            throw new IllegalArgumentException(length + " values are not a whole number of instances with " + d + " attributes");
+        }
+        return length / d;
+    }
+    
+    /**
+     * Scales a vector stored in a flat array to unit length. A vector with all
+     * values zero is left as it is.
+     * 
+     * @param c The array
+     * @param off Offset of the vector
+     * @param d Number of attributes
+     */
+    public static void normalize(double[] c, int off, int d) {
+        double norm = Math.sqrt(sq_norm(c, off, d));
+        if (norm == 0) return;
+        for (int j = 0; j < d; j++) {
+            c[off + j] /= norm;
+        }
+    }
+    
+    /**
+     * Squared norms of a set of centroids.
+     * 
+     * @param c Centroids, one row of attributes per cluster
+     * @param k Number of centroids
+     * @param d Number of attributes
+     * @param out Squared norm of each centroid
+     */
+    public static void sq_norms(double[] c, int k, int d, double[] out) {
+        for (int cl = 0; cl < k; cl++) {
+            out[cl] = sq_norm(c, cl * d, d);
+        }
+    }
+    
+    /**
+     * Squared norm of a vector stored in a flat array.
+     * 
+     * @param c The array
+     * @param off Offset of the vector
+     * @param d Number of attributes
+     * @return Squared norm
+     */
+    public static double sq_norm(double[] c, int off, int d) {
+        return DistanceKernel.KERNEL.dot(c, off, c, off, d);
+    }
+    
+    /**
+     * Euclidean distance between two vectors stored in flat arrays.
+     * 
+     * @param a First array
+     * @param ao Offset of the first vector
+     * @param b Second array
+     * @param bo Offset of the second vector
+     * @param d Number of attributes
+     * @return Euclidean distance
+     */
+    public static double euclidean(double[] a, int ao, double[] b, int bo, int d) {
+        return Math.sqrt(DistanceKernel.KERNEL.sq_euclidean(a, ao, b, bo, d));
+    }
+}
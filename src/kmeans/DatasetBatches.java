@@ -0,0 +1,43 @@
+package kmeans;
+
+/**
+ * Reads a dataset in batches, wrapping around to the start when the end is
+ * reached. Each batch is copied into the same buffer.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class DatasetBatches implements BatchSource 
+{
+    // The dataset
+    Dataset data;
+    // Index of the next instance to read
+    int next;
+    // Buffer for the current batch
+    DenseDataset buf;
+    
+    /**
+     * Creates a new batch source.
+     * 
+     * @param data The dataset
+     */
+    public DatasetBatches(Dataset data) {
+        this.data = data;
+    }
+    
+    @Override
+    public Dataset next_batch(int size) {
+        int d = data.dimensions();
+        size = Math.min(size, data.size());
+        if (buf == null || buf.size() != size) {
+            buf = new DenseDataset(size, d);
+        }
+        
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < d; j++) {
+                buf.set(i, j, data.get(next, j));
+            }
+            next = (next + 1) % data.size();
+        }
+        return buf;
+    }
+}
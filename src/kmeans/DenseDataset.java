@@ -0,0 +1,94 @@
+package kmeans;
+
+/**
+ * Dataset where all values are stored row-major in one contiguous double array.
+ * The attributes of instance i are found at index i*d to i*d+d-1.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class DenseDataset extends Dataset 
+{
+    // Values of all instances, row-major
+    double[] values;
+    
+    /**
+     * Creates a new empty dataset.
+     * 
+     * @param n Number of instances
+     * @param d Number of attributes
+     * @throws IllegalArgumentException If there are too many values for one array
+     */
+    public DenseDataset(int n, int d) {
+        this(new double[values(n, d)], d);
+    }
+    
+    /**
+     * Creates a new dataset from row-major values.
+     * 
+     * @param values Values of all instances
+     * @param d Number of attributes
+     * @throws IllegalArgumentException If the values are not a whole number of instances
+     */
+    public DenseDataset(double[] values, int d) {
+        super(rows(values.length, d), d);
+        this.values = values;
+    }
+    
+    @Override
+    public Dataset normalized() {
+        double[] nv = values.clone();
+        for (int i = 0; i < n; i++) {
+            normalize(nv, i * d, d);
+        }
+        return new DenseDataset(nv, d);
+    }
+    
+    @Override
+    public double get(int i, int j) {
+        return values[i * d + j];
+    }
+    
+    /**
+     * Sets the value of an attribute.
+     * 
+     * @param i Index of the instance
+     * @param j Index of the attribute
+     * @param val Attribute value
+     */
+    public void set(int i, int j, double val) {
+        values[i * d + j] = val;
+    }
+    
+    /**
+     * Sets all attributes of an instance.
+     * 
+     * @param i Index of the instance
+     * @param vals Attribute values
+     */
+    public void set_row(int i, double[] vals) {
+        System.arraycopy(vals, 0, values, i * d, d);
+    }
+    
+    @Override
+    public double sq_euclidean(int i, double[] c, int off) {
+        return DistanceKernel.KERNEL.sq_euclidean(values, i * d, c, off, d);
+    }
+    
+    @Override
+    public void sq_euclidean_all(int i, double[] c, int k, double[] out) {
+        DistanceKernel.KERNEL.sq_euclidean_all(values, i * d, c, k, d, out);
+    }
+    
+    @Override
+    public double dot(int i, double[] c, int off) {
+        return DistanceKernel.KERNEL.dot(values, i * d, c, off, d);
+    }
+    
+    @Override
+    public void add_to(int i, double[] sum, int off) {
+        int p = i * d;
+        for (int j = 0; j < d; j++) {
+            sum[off + j] += values[p + j];
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package kmeans;
+
+import java.awt.Color;
+import java.util.*;
+
+/**
+ * Bins instances into per-pixel count grids, one grid per cluster, and
+ * renders each pixel in the color of the dominant cluster with an intensity
+ * given by the log density. The first two attributes are scaled from their
+ * bounds in the dataset to the grid; a dataset with one attribute is plotted
+ * against 0. When the labels change only the counts of moved instances are
+ * updated, and only the pixels of affected cells are rendered again, so
+ * rendering cost depends on the number of moved instances and the grid size
+ * and not on the number of instances.
+ *
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class DensityGrid
+{
+    // Grid size
+    int w;
+    int h;
+    // Smallest value of the first two attributes
+    double min_x;
+    double min_y;
+    // Cells per unit of the first two attributes
+    double scale_x;
+    double scale_y;
+    // Color for each cluster
+    Color[] colors;
+    // Rendered RGB pixels
+    int[] pixels;
+    // Number of instances in each cell
+    int[] total;
+    // Max number of instances in a cell
+    int max_total;
+    // Number of instances in each cell, one grid per cluster
+    int[][] counts;
+    // Labels the counts were binned with
+    int[] labels;
+    // Cells changed by the current update
+    int[] touched;
+    int no_touched;
+    // True if a cell is changed by the current update
+    boolean[] is_touched;
+
+    /**
+     * Creates a new density grid.
+     *
+     * @param w Grid width
+     * @param h Grid height
+     * @param colors Color for each cluster
+     */
+    public DensityGrid(int w, int h, Color[] colors) {
+        this.w = w;
+        this.h = h;
+        this.colors = colors;
+        pixels = new int[w * h];
+        total = new int[w * h];
+        touched = new int[w * h];
+        is_touched = new boolean[w * h];
+    }
+
+    /**
+     * Scales the bounds of the first two attributes to the grid and bins all
+     * instances. The instances are uncolored until labels are set.
+     *
+     * @param data The instances
+     */
+    public void init(Dataset data) {
+        Arrays.fill(total, 0);
+        counts = null;
+        labels = null;
+        
+        // Bounds of the first two attributes
+        double max_x = Double.NEGATIVE_INFINITY;
+        double max_y = Double.NEGATIVE_INFINITY;
+        min_x = Double.POSITIVE_INFINITY;
+        min_y = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < data.size(); i++) {
+            double x = data.get(i, 0);
+            double y = y(data, i);
+            min_x = Math.min(min_x, x);
+            max_x = Math.max(max_x, x);
+            min_y = Math.min(min_y, y);
+            max_y = Math.max(max_y, y);
+        }
+        // A single value is placed in the middle of the grid
+        if (!(max_x > min_x)) {
+            min_x = data.size() > 0 ? min_x - 0.5 : 0;
+            max_x = min_x + 1;
+        }
+        if (!(max_y > min_y)) {
+            min_y = data.size() > 0 ? min_y - 0.5 : 0;
+            max_y = min_y + 1;
+        }
+        scale_x = (w - 1) / (max_x - min_x);
+        scale_y = (h - 1) / (max_y - min_y);
+        
+        for (int i = 0; i < data.size(); i++) {
+            int cell = cell(data, i);
+            if (cell >= 0) total[cell]++;
+        }
+        max_total = 0;
+        for (int t : total) {
+            max_total = Math.max(max_total, t);
+        }
+        render_all();
+    }
+
+    /**
+     * Updates the counts to new labels. Only instances that changed cluster
+     * since the last update are moved, and only the cells they moved in are
+     * rendered again. If the instances that changed cluster are known, only
+     * they are visited, otherwise all labels are compared.
+     *
+     * @param data The instances
+     * @param l Cluster index for each instance
+     * @param k Number of clusters
+     * @param moved Instances that changed cluster since the last update, or null if not known
+     * @param no_moved Number of instances in moved
+     */
+    public void update(Dataset data, int[] l, int k, int[] moved, int no_moved) {
+        boolean first = counts == null || counts.length != k;
+        if (first) {
+            // First labels: bin all instances
+            counts = new int[k][w * h];
+            labels = new int[l.length];
+            Arrays.fill(labels, -1);
+        }
+
+        no_touched = 0;
+        if (first || moved == null) {
+            for (int i = 0; i < l.length; i++) {
+                move(data, i, l[i]);
+            }
+        }
+        else {
+            for (int m = 0; m < no_moved; m++) {
+                int i = moved[m];
+                move(data, i, l[i]);
+            }
+        }
+
+        if (first) {
+            render_all();
+        }
+        for (int t = 0; t < no_touched; t++) {
+            int cell = touched[t];
+            is_touched[cell] = false;
+            if (!first) render(cell);
+        }
+    }
+
+    /**
+     * Moves the count of an instance to a new cluster and marks its cell as
+     * changed.
+     *
+     * @param data The instances
+     * @param i Index of the instance
+     * @param to New cluster of the instance
+     */
+    private void move(Dataset data, int i, int to) {
+        int from = labels[i];
+        if (from == to) return;
+        labels[i] = to;
+
+        int cell = cell(data, i);
+        if (cell < 0) return;
+        if (from >= 0) counts[from][cell]--;
+        if (to >= 0) counts[to][cell]++;
+        if (!is_touched[cell]) {
+            is_touched[cell] = true;
+            touched[no_touched++] = cell;
+        }
+    }
+
+    /**
+     * Returns the grid x-coord of a value of the first attribute.
+     *
+     * @param x Value of the first attribute
+     * @return Grid x-coord
+     */
+    public double grid_x(double x) {
+        return (x - min_x) * scale_x;
+    }
+
+    /**
+     * Returns the grid y-coord of a value of the second attribute.
+     *
+     * @param y Value of the second attribute
+     * @return Grid y-coord
+     */
+    public double grid_y(double y) {
+        return (y - min_y) * scale_y;
+    }
+
+    /**
+     * Sets the cluster colors and renders all cells again.
+     *
+     * @param colors Color for each cluster
+     */
+    public void set_colors(Color[] colors) {
+        this.colors = colors;
+        render_all();
+    }
+
+    /**
+     * Returns the rendered RGB pixels.
+     *
+     * @return The pixels, row by row
+     */
+    public int[] pixels() {
+        return pixels;
+    }
+
+    /**
+     * Renders all cells.
+     */
+    private void render_all() {
+        for (int cell = 0; cell < total.length; cell++) {
+            render(cell);
+        }
+    }
+
+    /**
+     * Renders a cell.
+     *
+     * @param cell The cell
+     */
+    private void render(int cell) {
+        int t = total[cell];
+        if (t == 0) {
+            pixels[cell] = 0xFFFFFFFF;
+            return;
+        }
+
+        // Find dominant cluster in the cell
+        int best = -1;
+        int best_cnt = 0;
+        if (counts != null) {
+            for (int c = 0; c < counts.length; c++) {
+                if (counts[c][cell] > best_cnt) {
+                    best_cnt = counts[c][cell];
+                    best = c;
+                }
+            }
+        }
+        int rgb = best >= 0 ? colors[best % colors.length].getRGB() : 0;
+
+        // Blend from white to the cluster color by log density. At least
+        // a third of the color is used so single instances are visible.
+        double a = 0.35 + 0.65 * Math.log1p(t) / Math.log1p(max_total);
+        int r = blend((rgb >> 16) & 0xFF, a);
+        int g = blend((rgb >> 8) & 0xFF, a);
+        int b = blend(rgb & 0xFF, a);
+        pixels[cell] = 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Blends a color component from white.
+     *
+     * @param v Color component
+     * @param a Amount of the color component
+     * @return Blended color component
+     */
+    private static int blend(int v, double a) {
+        return (int)Math.round(255 * (1 - a) + v * a);
+    }
+
+    /**
+     * Returns the grid cell of an instance.
+     *
+     * @param data The instances
+     * @param i Index of the instance
+     * @return Cell index, or -1 if the instance is outside the grid
+     */
+    private int cell(Dataset data, int i) {
+        int x = (int)Math.round(grid_x(data.get(i, 0)));
+        int y = (int)Math.round(grid_y(y(data, i)));
+        if (x < 0 || x >= w || y < 0 || y >= h) return -1;
+        return y * w + x;
+    }
+
+    /**
+     * Returns the second attribute of an instance, or 0 if there is only one.
+     *
+     * @param data The instances
+     * @param i Index of the instance
+     * @return Value of the second attribute
+     */
+    private static double y(Dataset data, int i) {
+        return data.dimensions() > 1 ? data.get(i, 1) : 0;
+    }
+}
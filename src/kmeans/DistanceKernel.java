@@ -0,0 +1,311 @@
+package kmeans;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Kernel for squared Euclidean distances and dot products between vectors
+ * stored in flat arrays.
+ * The square root is never needed to find the closest centroid, so the kernels
+ * only calculate squared distances. The kernel used by the datasets is picked
+ * once at startup: the SIMD kernel if the incubator Vector API module is
+ * available (run with --add-modules jdk.incubator.vector), otherwise the scalar
+ * kernel. The scalar kernel can be forced with -Dkmeans.kernel=scalar.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public abstract class DistanceKernel 
+{
+    // The kernel in use
+    static final DistanceKernel KERNEL = load();
+    
+    /**
+     * Squared Euclidean distance between two vectors.
+     * 
+     * @param a First array
+     * @param ao Offset of the first vector
+     * @param b Second array
+     * @param bo Offset of the second vector
+     * @param d Number of attributes
+     * @return Squared Euclidean distance
+     */
+    public abstract double sq_euclidean(double[] a, int ao, double[] b, int bo, int d);
+    
+    /**
+     * Dot product of two vectors.
+     * 
+     * @param a First array
+     * @param ao Offset of the first vector
+     * @param b Second array
+     * @param bo Offset of the second vector
+     * @param d Number of attributes
+     * @return Dot product
+     */
+    public abstract double dot(double[] a, int ao, double[] b, int bo, int d);
+    
+    /**
+     * Squared Euclidean distance between a float vector and a double vector.
+     * The floats are widened and the sum is accumulated in double.
+     * 
+     * @param a Array with the float vector
+     * @param ao Offset of the float vector
+     * @param b Array with the double vector
+     * @param bo Offset of the double vector
+     * @param d Number of attributes
+     * @return Squared Euclidean distance
+     */
+    public double sq_euclidean(float[] a, int ao, double[] b, int bo, int d) {
+        double sum = 0;
+        for (int j = 0; j < d; j++) {
+            double diff = a[ao + j] - b[bo + j];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+    
+    /**
+     * Dot product of a float vector and a double vector. The floats are
+     * widened and the sum is accumulated in double.
+     * 
+     * @param a Array with the float vector
+     * @param ao Offset of the float vector
+     * @param b Array with the double vector
+     * @param bo Offset of the double vector
+     * @param d Number of attributes
+     * @return Dot product
+     */
+    public double dot(float[] a, int ao, double[] b, int bo, int d) {
+        double sum = 0;
+        for (int j = 0; j < d; j++) {
+            sum += a[ao + j] * b[bo + j];
+        }
+        return sum;
+    }
+    
+    /**
+     * Squared Euclidean distance between a vector of doubles in a byte buffer,
+     * for example off-heap or memory-mapped, and a vector in an array.
+     * 
+     * @param a Buffer with the first vector
+     * @param ao Byte offset of the first vector
+     * @param b Array with the second vector
+     * @param bo Offset of the second vector
+     * @param d Number of attributes
+     * @return Squared Euclidean distance
+     */
+    public double sq_euclidean(ByteBuffer a, int ao, double[] b, int bo, int d) {
+        double sum = 0;
+        for (int j = 0; j < d; j++) {
+            double diff = a.getDouble(ao + j * 8) - b[bo + j];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+    
+    /**
+     * Dot product of a vector of doubles in a byte buffer and a vector in an
+     * array.
+     * 
+     * @param a Buffer with the first vector
+     * @param ao Byte offset of the first vector
+     * @param b Array with the second vector
+     * @param bo Offset of the second vector
+     * @param d Number of attributes
+     * @return Dot product
+     */
+    public double dot(ByteBuffer a, int ao, double[] b, int bo, int d) {
+        double sum = 0;
+        for (int j = 0; j < d; j++) {
+            sum += a.getDouble(ao + j * 8) * b[bo + j];
+        }
+        return sum;
+    }
+    
+    /**
+     * Squared Euclidean distance between a quantized vector and a double
+     * vector. Code q of attribute j is decoded to offset[j] + scale[j] * q,
+     * and the sum is accumulated in double.
+     * 
+     * @param q Array with the quantized vector
+     * @param qo Offset of the quantized vector
+     * @param scale Step between codes for each attribute
+     * @param offset Value of code 0 for each attribute
+     * @param b Array with the double vector
+     * @param bo Offset of the double vector
+     * @param d Number of attributes
+     * @return Squared Euclidean distance
+     */
+    public double sq_euclidean(byte[] q, int qo, double[] scale, double[] offset, double[] b, int bo, int d) {
+        double sum = 0;
+        for (int j = 0; j < d; j++) {
+            double diff = offset[j] + scale[j] * q[qo + j] - b[bo + j];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+    
+    /**
+     * Dot product of a quantized vector and a double vector.
+     * 
+     * @param q Array with the quantized vector
+     * @param qo Offset of the quantized vector
+     * @param scale Step between codes for each attribute
+     * @param offset Value of code 0 for each attribute
+     * @param b Array with the double vector
+     * @param bo Offset of the double vector
+     * @param d Number of attributes
+     * @return Dot product
+     */
+    public double dot(byte[] q, int qo, double[] scale, double[] offset, double[] b, int bo, int d) {
+        double sum = 0;
+        for (int j = 0; j < d; j++) {
+            sum += (offset[j] + scale[j] * q[qo + j]) * b[bo + j];
+        }
+        return sum;
+    }
+    
+    /**
+     * Dot products of two vectors with four vectors each, added to a 2x4 block
+     * of an output matrix. The four vectors are stored one after another with
+     * the same stride. Used as the inner kernel of the blocked assignment.
+     * 
+     * @param x Array with the two vectors
+     * @param xo0 Offset of the first vector
+     * @param xo1 Offset of the second vector
+     * @param c Array with the four vectors
+     * @param co Offset of the first of the four vectors
+     * @param stride Distance between the four vectors
+     * @param d Number of attributes
+     * @param out Output matrix
+     * @param oo0 Offset of the output row for the first vector
+     * @param oo1 Offset of the output row for the second vector
+     */
+    public void dot_2x4(double[] x, int xo0, int xo1, double[] c, int co, int stride, int d, double[] out, int oo0, int oo1) {
+        for (int i = 0; i < 4; i++) {
+            out[oo0 + i] += dot(x, xo0, c, co + i * stride, d);
+            out[oo1 + i] += dot(x, xo1, c, co + i * stride, d);
+        }
+    }
+    
+    /**
+     * Squared Euclidean distances from one vector to all centroids.
+     * 
+     * @param x Array with the vector
+     * @param xo Offset of the vector
+     * @param c Centroids, one row of attributes per cluster
+     * @param k Number of centroids
+     * @param d Number of attributes
+     * @param out Squared distance to each centroid
+     */
+    public void sq_euclidean_all(double[] x, int xo, double[] c, int k, int d, double[] out) {
+        for (int i = 0; i < k; i++) {
+            out[i] = sq_euclidean(x, xo, c, i * d, d);
+        }
+    }
+    
+    /**
+     * Squared Euclidean distances from one vector of doubles in a byte buffer
+     * to all centroids.
+     * 
+     * @param x Buffer with the vector
+     * @param xo Byte offset of the vector
+     * @param c Centroids, one row of attributes per cluster
+     * @param k Number of centroids
+     * @param d Number of attributes
+     * @param out Squared distance to each centroid
+     */
+    public void sq_euclidean_all(ByteBuffer x, int xo, double[] c, int k, int d, double[] out) {
+        for (int i = 0; i < k; i++) {
+            out[i] = sq_euclidean(x, xo, c, i * d, d);
+        }
+    }
+    
+    /**
+     * Squared Euclidean distances from one float vector to all centroids.
+     * 
+     * @param x Array with the float vector
+     * @param xo Offset of the vector
+     * @param c Centroids, one row of attributes per cluster
+     * @param k Number of centroids
+     * @param d Number of attributes
+     * @param out Squared distance to each centroid
+     */
+    public void sq_euclidean_all(float[] x, int xo, double[] c, int k, int d, double[] out) {
+        for (int i = 0; i < k; i++) {
+            out[i] = sq_euclidean(x, xo, c, i * d, d);
+        }
+    }
+    
+    /**
+     * Squared Euclidean distances from one quantized vector to all centroids.
+     * Each attribute is decoded once for four centroids, instead of once for
+     * every centroid.
+     * 
+     * @param q Array with the quantized vector
+     * @param qo Offset of the quantized vector
+     * @param scale Step between codes for each attribute
+     * @param offset Value of code 0 for each attribute
+     * @param c Centroids, one row of attributes per cluster
+     * @param k Number of centroids
+     * @param d Number of attributes
+     * @param out Squared distance to each centroid
+     */
+    public void sq_euclidean_all(byte[] q, int qo, double[] scale, double[] offset, double[] c, int k, int d, double[] out) {
+        int i = 0;
+        for (; i + 3 < k; i += 4) {
+            int o0 = i * d;
+            double s0 = 0;
+            double s1 = 0;
+            double s2 = 0;
+            double s3 = 0;
+            for (int j = 0; j < d; j++) {
+                double xj = offset[j] + scale[j] * q[qo + j];
+                double e0 = xj - c[o0 + j];
+                double e1 = xj - c[o0 + d + j];
+                double e2 = xj - c[o0 + 2 * d + j];
+                double e3 = xj - c[o0 + 3 * d + j];
+                s0 += e0 * e0;
+                s1 += e1 * e1;
+                s2 += e2 * e2;
+                s3 += e3 * e3;
+            }
+            out[i] = s0;
+            out[i + 1] = s1;
+            out[i + 2] = s2;
+            out[i + 3] = s3;
+        }
+        
+        // Remaining centroids
+        for (; i < k; i++) {
+            out[i] = sq_euclidean(q, qo, scale, offset, c, i * d, d);
+        }
+    }
+    
+    /**
+     * Returns the kernel in use.
+     * 
+     * @return The kernel
+     */
+    public static DistanceKernel get() {
+        return KERNEL;
+    }
+    
+    /**
+     * Picks the kernel to use.
+     * 
+     * @return The SIMD kernel if available, otherwise the scalar kernel
+     */
+    private static DistanceKernel load() {
+        if ("scalar".equals(System.getProperty("kmeans.kernel"))) {
+            return new ScalarKernel();
+        }
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (DistanceKernel)Class.forName("kmeans.VectorKernel").getDeclaredConstructor().newInstance();
+            }
+            catch (ReflectiveOperationException | LinkageError e) {
+                // Fall back to scalar kernel
+            }
+        }
+        return new ScalarKernel();
+    }
+}
@@ -0,0 +1,127 @@
+package kmeans;
+
+/**
+ * Elkan's accelerated assignment. Each instance keeps an upper bound on the
+ * distance to its own centroid and a lower bound on the distance to every other
+ * centroid. Together with the distances between centroids, most distance
+ * calculations are skipped once the centroids settle. Suited for higher k, at
+ * the cost of k lower bounds per instance.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class ElkanAssigner extends BoundedAssigner 
+{
+    // Upper bound on the distance to the assigned centroid
+    double[] upper;
+    // Lower bounds on the distance to each centroid, one row per instance
+    double[] lower;
+    
+    /**
+     * Checks if the lower bounds for a dataset fit in one array.
+     * 
+     * @param n Number of instances
+     * @param k Number of clusters
+     * @return True if n*k lower bounds fit in one array
+     */
+    static boolean fits(int n, int k) {
+        return (long)n * k <= Integer.MAX_VALUE - 8;
+    }
+    
+    @Override
+    public void init(Dataset data, int k) {
+        if (!fits(data.size(), k)) {
+            throw new IllegalArgumentException(data.size() + "x" + k + " lower bounds don't fit in one array, use HamerlyAssigner");
+        }
+        super.init(data, k);
+        upper = new double[data.size()];
+        lower = new double[data.size() * k];
+    }
+    
+    @Override
+    public void moved(int i) {
+        // Force the upper bound to be recalculated
+        upper[i] = Double.MAX_VALUE;
+    }
+    
+    @Override
+    public void assign_range(int lo, int hi, double[] centroids, int[] labels, ClusterSums sums) {
+        for (int i = lo; i < hi; i++) {
+            int a = labels[i];
+            int off = i * k;
+            
+            // First iteration: no bounds yet
+            if (a < 0) {
+                assign(i, closest(i, centroids), labels, sums);
+                sums.distances += k;
+                continue;
+            }
+            
+            // Loosen bounds by how far the centroids moved
+            upper[i] += shift[a];
+            for (int c = 0; c < k; c++) {
+                lower[off + c] = Math.max(lower[off + c] - shift[c], 0);
+            }
+            
+            // No other centroid can be closer
+            if (upper[i] * SAFE < half_min[a]) {
+                assign(i, a, labels, sums);
+                continue;
+            }
+            
+            // Squared distance to the assigned centroid (NaN until calculated)
+            double best2 = Double.NaN;
+            for (int c = 0; c < k; c++) {
+                if (c == a) continue;
+                
+                double z = Math.max(lower[off + c], half_cc[a * k + c]);
+                if (upper[i] * SAFE < z) continue;
+                
+                // Tighten upper bound and test again
+                if (Double.isNaN(best2)) {
+                    best2 = data.sq_euclidean(i, centroids, a * d, c_norms[a]);
+                    sums.distances++;
+                    upper[i] = Math.sqrt(best2);
+                    lower[off + a] = upper[i];
+                    if (upper[i] * SAFE < z) continue;
+                }
+                
+                double dist2 = data.sq_euclidean(i, centroids, c * d, c_norms[c]);
+                sums.distances++;
+                lower[off + c] = Math.sqrt(dist2);
+                // Ties go to the lowest cluster index, as in the plain assignment
+                if (dist2 < best2 || (dist2 == best2 && c < a)) {
+                    a = c;
+                    best2 = dist2;
+                    upper[i] = lower[off + c];
+                }
+            }
+            
+            assign(i, a, labels, sums);
+        }
+    }
+    
+    /**
+     * Finds the closest centroid for an instance and sets its bounds.
+     * 
+     * @param i Index of the instance
+     * @param centroids Centroids, one row of attributes per cluster
+     * @return Index of the closest centroid
+     */
+    private int closest(int i, double[] centroids) {
+        int off = i * k;
+        int bestC = 0;
+        double bestD = Double.MAX_VALUE;
+        
+        for (int c = 0; c < k; c++) {
+            double dist = data.sq_euclidean(i, centroids, c * d, c_norms[c]);
+            lower[off + c] = Math.sqrt(dist);
+            if (dist < bestD) {
+                bestD = dist;
+                bestC = c;
+            }
+        }
+        
+        upper[i] = lower[off + bestC];
+        return bestC;
+    }
+}
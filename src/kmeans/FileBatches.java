@@ -0,0 +1,138 @@
+package kmeans;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+ * Reads a binary dataset file (see MappedDataset) in batches, straight from
+ * the file with sequential reads. Only the current batch is held in memory, so
+ * the file can be larger than the heap and have more than 2^31 instances. The
+ * file is read a number of passes from start to end, after which no more
+ * batches are returned. Read errors end the batches and are thrown by close.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class FileBatches implements BatchSource, Closeable
+{
+    // The file
+    Path file;
+    // Channel reading the file
+    FileChannel ch;
+    // Header of the file
+    MappedDataset.Header header;
+    // Number of passes left after the current one
+    int passes;
+    // Number of instances read in the current pass
+    long read;
+    // Bytes of the current batch
+    ByteBuffer bytes;
+    // Buffer for the current batch
+    DenseDataset buf;
+    // First error while reading, thrown by close
+    IOException error;
+    
+    /**
+     * Opens a binary dataset file for reading in batches.
+     * 
+     * @param file The file
+     * @param passes Number of times the file is read from start to end
+     * @throws IOException If the file can't be read or is not a dataset file
+     * @throws IllegalArgumentException If passes is not positive
+     */
+    public FileBatches(Path file, int passes) throws IOException {
+        if (passes <= 0) {
+            throw new IllegalArgumentException("Passes must be positive, got " + passes);
+        }
+        this.file = file;
+        this.passes = passes - 1;
+        ch = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            header = MappedDataset.read_header(ch, file);
+        }
+        catch (IOException ex) {
+            ch.close();
+            throw ex;
+        }
+    }
+    
+    /**
+     * Returns the number of instances in the file.
+     * 
+     * @return Number of instances
+     */
+    public long size() {
+        return header.n;
+    }
+    
+    /**
+     * Returns the number of attributes.
+     * 
+     * @return Number of attributes
+     */
+    public int dimensions() {
+        return header.d;
+    }
+    
+    @Override
+    public Dataset next_batch(int size) {
+        if (error != null || header.n == 0) return null;
+        try {
+            // Start the next pass at the end of the file
+            if (read == header.n) {
+                if (passes == 0) return null;
+                passes--;
+                read = 0;
+                ch.position(MappedDataset.HEADER);
+            }
+            
+            int d = header.d;
+            int rows = (int)Math.min(size, header.n - read);
+            if (buf == null || buf.size() != rows) {
+                buf = new DenseDataset(rows, d);
+            }
+            long len = rows * header.row_bytes;
+            if (bytes == null || bytes.capacity() < len) {
+                bytes = ByteBuffer.allocate((int)Math.min(Integer.MAX_VALUE, len)).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            
+            // Read the instances of the batch
+            bytes.clear().limit((int)len);
+            while (bytes.hasRemaining()) {
+                if (ch.read(bytes) < 0) {
+                    throw new IOException("Truncated data in " + file);
+                }
+            }
+            bytes.flip();
+            if (header.type == MappedDataset.FLOAT64) {
+                bytes.asDoubleBuffer().get(buf.values, 0, rows * d);
+            }
+            else {
+                FloatBuffer f = bytes.asFloatBuffer();
+                for (int p = 0; p < rows * d; p++) {
+                    buf.values[p] = f.get(p);
+                }
+            }
+            read += rows;
+            return buf;
+        }
+        catch (IOException ex) {
+            error = ex;
+            return null;
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            ch.close();
+        }
+        catch (IOException ex) {
+            if (error == null) error = ex;
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package kmeans;
+
+/**
+ * Dataset where all values are stored row-major as float32, half the bytes
+ * of a DenseDataset. Suited for embeddings that are float32 to begin with.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class FloatDataset extends ReducedDataset 
+{
+    // Values of all instances, row-major
+    float[] values;
+    
+    /**
+     * Creates a new dataset from row-major values.
+     * 
+     * @param values Values of all instances
+     * @param d Number of attributes
+     * @throws IllegalArgumentException If the values are not a whole number of instances
+     */
+    public FloatDataset(float[] values, int d) {
+        super(rows(values.length, d), d);
+        this.values = values;
+    }
+    
+    /**
+     * Creates a float32 copy of a dataset.
+     * 
+     * @param src The dataset
+     * @return The float32 dataset
+     * @throws IllegalArgumentException If there are too many values for one array
+     */
+    public static FloatDataset of(Dataset src) {
+        int n = src.size();
+        int d = src.dimensions();
+        FloatDataset res = new FloatDataset(new float[values(n, d)], d);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < d; j++) {
+                res.values[i * d + j] = (float)src.get(i, j);
+            }
+            res.track_error(src, i);
+        }
+        return res;
+    }
+    
+    @Override
+    public double get(int i, int j) {
+        return values[i * d + j];
+    }
+    
+    @Override
+    public double sq_euclidean(int i, double[] c, int off) {
+        return DistanceKernel.KERNEL.sq_euclidean(values, i * d, c, off, d);
+    }
+    
+    @Override
+    public void sq_euclidean_all(int i, double[] c, int k, double[] out) {
+        DistanceKernel.KERNEL.sq_euclidean_all(values, i * d, c, k, d, out);
+    }
+    
+    @Override
+    public double dot(int i, double[] c, int off) {
+        return DistanceKernel.KERNEL.dot(values, i * d, c, off, d);
+    }
+    
+    @Override
+    public void add_to(int i, double[] sum, int off) {
+        int p = i * d;
+        for (int j = 0; j < d; j++) {
+            sum[off + j] += values[p + j];
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package kmeans;
+
+/**
+ * Hamerly's accelerated assignment. Each instance keeps an upper bound on the
+ * distance to its own centroid and one lower bound on the distance to all other
+ * centroids. If the upper bound is below the lower bound, or below half the
+ * distance to the closest other centroid, the instance cannot change cluster and
+ * no distances are calculated for it. Suited for low k, since the bounds only
+ * take two doubles per instance.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class HamerlyAssigner extends BoundedAssigner 
+{
+    // Upper bound on the distance to the assigned centroid
+    double[] upper;
+    // Lower bound on the distance to the second closest centroid
+    double[] lower;
+    
+    @Override
+    public void init(Dataset data, int k) {
+        super.init(data, k);
+        upper = new double[data.size()];
+        lower = new double[data.size()];
+    }
+    
+    @Override
+    public void moved(int i) {
+        // Force the bounds to be recalculated
+        upper[i] = Double.MAX_VALUE;
+        lower[i] = 0;
+    }
+    
+    @Override
+    public void assign_range(int lo, int hi, double[] centroids, int[] labels, ClusterSums sums) {
+        for (int i = lo; i < hi; i++) {
+            int a = labels[i];
+            
+            // First iteration: no bounds yet
+            if (a < 0) {
+                assign(i, closest(i, centroids), labels, sums);
+                sums.distances += k;
+                continue;
+            }
+            
+            // Loosen bounds by how far the centroids moved
+            upper[i] += shift[a];
+            lower[i] -= max_shift_except(a);
+            
+            double m = Math.max(half_min[a], lower[i]);
+            if (upper[i] * SAFE < m) {
+                assign(i, a, labels, sums);
+                continue;
+            }
+            
+            // Tighten upper bound and test again
+            upper[i] = Math.sqrt(data.sq_euclidean(i, centroids, a * d, c_norms[a]));
+            sums.distances++;
+            if (upper[i] * SAFE < m) {
+                assign(i, a, labels, sums);
+                continue;
+            }
+            
+            assign(i, closest(i, centroids), labels, sums);
+            sums.distances += k;
+        }
+    }
+    
+    /**
+     * Finds the closest centroid for an instance and resets its bounds.
+     * 
+     * @param i Index of the instance
+     * @param centroids Centroids, one row of attributes per cluster
+     * @return Index of the closest centroid
+     */
+    private int closest(int i, double[] centroids) {
+        int bestC = 0;
+        double bestD = Double.MAX_VALUE;
+        double secondD = Double.MAX_VALUE;
+        
+        for (int c = 0; c < k; c++) {
+            double dist = data.sq_euclidean(i, centroids, c * d, c_norms[c]);
+            if (dist < bestD) {
+                secondD = bestD;
+                bestD = dist;
+                bestC = c;
+            }
+            else if (dist < secondD) {
+                secondD = dist;
+            }
+        }
+        
+        upper[i] = Math.sqrt(bestD);
+        lower[i] = Math.sqrt(secondD);
+        return bestC;
+    }
+}
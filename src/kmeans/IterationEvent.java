@@ -0,0 +1,83 @@
+package kmeans;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event for one iteration of a k-means run. The event is only
+ * recorded when enabled in a recording, for example with
+ * <code>-XX:StartFlightRecording</code>, and costs close to nothing otherwise.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+@Name("kmeans.Iteration")
+@Label("K-Means Iteration")
+@Category("K-Means")
+@Description("One iteration of a k-means run")
+@StackTrace(false)
+public class IterationEvent extends Event 
+{
+    @Label("Iteration")
+    int iteration;
+    
+    @Label("Instances")
+    int n;
+    
+    @Label("Clusters")
+    int k;
+    
+    @Label("Assignment Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long assign_nanos;
+    
+    @Label("Update Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long update_nanos;
+    
+    @Label("Check Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long check_nanos;
+    
+    @Label("Max Range Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long max_range_nanos;
+    
+    @Label("Mean Range Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long mean_range_nanos;
+    
+    @Label("Distances Calculated")
+    long distances;
+    
+    @Label("Distances Skipped")
+    long skipped;
+    
+    @Label("Instances Reassigned")
+    int changed;
+    
+    @Label("Inertia")
+    double inertia;
+    
+    @Label("Max Centroid Shift")
+    double max_shift;
+    
+    /**
+     * Copies the metrics of an iteration to the event.
+     * 
+     * @param m The metrics
+     */
+    void set(IterationMetrics m) {
+        iteration = m.iteration;
+        n = m.n;
+        k = m.k;
+        assign_nanos = m.assign_nanos;
+        update_nanos = m.update_nanos;
+        check_nanos = m.check_nanos;
+        max_range_nanos = m.max_range_nanos;
+        mean_range_nanos = m.mean_range_nanos;
+        distances = m.distances;
+        skipped = m.skipped;
+        changed = m.changed;
+        inertia = m.inertia;
+        max_shift = m.max_shift;
+    }
+}
@@ -0,0 +1,68 @@
+package kmeans;
+
+import java.util.Locale;
+
+/**
+ * Metrics for one iteration of a k-means run. The time of the assignment step
+ * is also given per range of instances, so a slow iteration caused by one
+ * straggling worker can be told apart from an iteration that is slow overall.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class IterationMetrics 
+{
+    // Iteration number, starting at 1
+    public int iteration;
+    // Number of instances
+    public int n;
+    // Number of clusters
+    public int k;
+    // Time of the assignment step, including reseeding of empty clusters, in nanoseconds
+    public long assign_nanos;
+    // Time of the update step, in nanoseconds
+    public long update_nanos;
+    // Time of the convergence check, in nanoseconds
+    public long check_nanos;
+    // Number of ranges the assignment step was split into
+    public int ranges;
+    // Mean time to assign a range, in nanoseconds
+    public long mean_range_nanos;
+    // Max time to assign a range, in nanoseconds
+    public long max_range_nanos;
+    // Number of distances between instances and centroids calculated
+    public long distances;
+    // Number of distances skipped by the assignment strategy (n*k - distances)
+    public long skipped;
+    // Number of instances that changed cluster
+    public int changed;
+    // Sum of squared distances from each instance to the mean of its cluster
+    public double inertia;
+    // Longest distance a centroid moved
+    public double max_shift;
+    
+    /**
+     * Returns the metrics as a JSON object on one line.
+     * 
+     * @return JSON object
+     */
+    public String to_json() {
+        return String.format(Locale.ROOT, 
+            "{\"iteration\":%d,\"n\":%d,\"k\":%d,\"assign_nanos\":%d,\"update_nanos\":%d,\"check_nanos\":%d," +
+            "\"ranges\":%d,\"mean_range_nanos\":%d,\"max_range_nanos\":%d,\"distances\":%d,\"skipped\":%d," +
+            "\"changed\":%d,\"inertia\":%s,\"max_shift\":%s}",
+            iteration, n, k, assign_nanos, update_nanos, check_nanos, 
+            ranges, mean_range_nanos, max_range_nanos, distances, skipped, 
+            changed, json(inertia), json(max_shift));
+    }
+    
+    /**
+     * Formats a number for JSON, which has no NaN or infinity.
+     * 
+     * @param v The number
+     * @return JSON number, or null
+     */
+    private static String json(double v) {
+        if (Double.isNaN(v) || Double.isInfinite(v)) return "null";
+        return Double.toString(v);
+    }
+}
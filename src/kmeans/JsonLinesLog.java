@@ -0,0 +1,75 @@
+package kmeans;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+/**
+ * Listener writing the metrics of each iteration as one JSON object per line.
+ * Write errors can't be thrown from the listener, so the first one is kept and
+ * thrown when the log is closed.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class JsonLinesLog implements KMeansListener, Closeable 
+{
+    // The log writer
+    Writer out;
+    // First write error
+    IOException error;
+    
+    /**
+     * Creates a new log, replacing any existing file.
+     * 
+     * @param file The log file
+     * @throws IOException If the file can't be created
+     */
+    public JsonLinesLog(Path file) throws IOException {
+        this(Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Creates a new log writing to a writer.
+     * 
+     * @param out The writer
+     */
+    public JsonLinesLog(Writer out) {
+        this.out = out;
+    }
+    
+    @Override
+    public void metrics(IterationMetrics m) {
+        if (error != null) return;
+        try {
+            out.write(m.to_json());
+            out.write('\n');
+        }
+        catch (IOException ex) {
+            error = ex;
+        }
+    }
+    
+    @Override
+    public void done() {
+        if (error != null) return;
+        try {
+            out.flush();
+        }
+        catch (IOException ex) {
+            error = ex;
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            out.close();
+        }
+        catch (IOException ex) {
+            if (error == null) error = ex;
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
@@ -0,0 +1,597 @@
+package kmeans;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Headless k-means clustering engine. The engine runs the algorithm as fast as
+ * possible and reports progress to any registered listeners, for example the
+ * visualization GUI.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class KMeans 
+{
+    // The dataset
+    Dataset data;
+    // Number of clusters
+    int k;
+    // Centroids, one row of attributes per cluster
+    double[] centroids;
+    // Cluster index for each instance
+    int[] labels;
+    // Randomizer
+    Random rnd;
+    // Strategy for placing the initial centroids
+    Seeding seeding = new KMeansPlusPlus();
+    // If true, empty clusters are reseeded with the instance farthest from its centroid
+    boolean reseed_empty = true;
+    // Max distance a centroid moves in one iteration (0 for no limit)
+    double max_step = 0;
+    // Max number of iterations
+    int max_iterations = Integer.MAX_VALUE;
+    // Stop when no centroid moves longer than this (0 to disable)
+    double epsilon = 0;
+    // Stop when fewer than this fraction of instances change cluster (0 to disable)
+    double min_changed = 0;
+    // Strategy for the assignment step (null to pick one for each run)
+    Assigner assigner;
+    // Strategy used in the current run
+    Assigner run_assigner;
+    // Pool running the assignment step (null to run on the calling thread)
+    ForkJoinPool pool;
+    // If true, partial sums are merged in a fixed order independent of the pool
+    boolean deterministic = true;
+    // If true, centroids are kept at unit length (spherical k-means)
+    boolean spherical = false;
+    // Number of instances each worker assigns before its sums are merged
+    int block_size = 4096;
+    // Listeners notified about the progress of a run
+    ArrayList<KMeansListener> listeners = new ArrayList<>();
+    // If true, metrics are gathered each iteration and passed to the listeners
+    boolean metrics = false;
+    // If true, the instances that changed cluster are passed to the listeners
+    boolean track_moved = false;
+    // Number of iterations performed in the current run
+    int iteration;
+    // Mean of all instances, calculated when metrics are first needed
+    double[] mean;
+    // Sum of squared distances from each instance to the mean
+    double spread;
+    // Mean of all instances shared between runs (null to calculate it in each run)
+    double[] given_mean;
+    // Spread shared between runs
+    double given_spread;
+    // Writes checkpoints of the run (null for no checkpoints)
+    Checkpointer checkpointer;
+    // If true, the current run stops after the iteration in progress
+    volatile boolean stopped;
+    
+    /**
+     * Creates a new k-means engine.
+     * 
+     * @param rnd Randomizer used for seeding
+     */
+    public KMeans(Random rnd) {
+        this.rnd = rnd;
+    }
+    
+    /**
+     * Adds a listener that is notified about the progress of a run.
+     * 
+     * @param l The listener
+     */
+    public void add_listener(KMeansListener l) {
+        listeners.add(l);
+    }
+    
+    /**
+     * Sets if metrics are gathered each iteration and passed to the listeners.
+     * The inertia in the metrics costs an extra pass over the dataset per run,
+     * so metrics are off unless a listener needs them. While flight recording
+     * is on they are always gathered for the JFR event, but only passed to
+     * the listeners if enabled here.
+     * 
+     * @param metrics True to gather metrics
+     */
+    public void set_metrics(boolean metrics) {
+        this.metrics = metrics;
+    }
+    
+    /**
+     * Sets if the instances that changed cluster in each iteration are
+     * gathered and passed to the listeners, so a listener can update its view
+     * of the labels without comparing all of them.
+     * 
+     * @param track_moved True to gather the instances that changed cluster
+     */
+    public void set_track_moved(boolean track_moved) {
+        this.track_moved = track_moved;
+    }
+    
+    /**
+     * Sets the mean and spread of the dataset used for the inertia in the
+     * metrics, so several runs on the same dataset can share them instead of
+     * each making an extra pass over the data.
+     * 
+     * @param mean Mean of all instances, see spread(Dataset, double[]), or null to calculate it in each run
+     * @param spread Sum of squared distances from each instance to the mean
+     */
+    public void set_spread(double[] mean, double spread) {
+        this.given_mean = mean;
+        this.given_spread = spread;
+    }
+    
+    /**
+     * Calculates the mean of all instances in a dataset and the sum of squared
+     * distances from each instance to it.
+     * 
+     * @param data The dataset
+     * @param mean Filled with the mean of all instances
+     * @return Sum of squared distances from each instance to the mean
+     */
+    public static double spread(Dataset data, double[] mean) {
+        int d = data.dimensions();
+        Arrays.fill(mean, 0);
+        for (int i = 0; i < data.size(); i++) {
+            data.add_to(i, mean, 0);
+        }
+        for (int j = 0; j < d; j++) {
+            mean[j] /= data.size();
+        }
+        double mean_norm = Dataset.sq_norm(mean, 0, d);
+        double spread = 0;
+        for (int i = 0; i < data.size(); i++) {
+            spread += data.sq_euclidean(i, mean, 0, mean_norm);
+        }
+        return spread;
+    }
+    
+    /**
+     * Stops the current run after the iteration in progress, for example from
+     * a listener. The result holds the centroids and labels so far.
+     */
+    public void stop() {
+        stopped = true;
+    }
+    
+    /**
+     * Sets the strategy for placing the initial centroids.
+     * 
+     * @param seeding The seeding strategy
+     */
+    public void set_seeding(Seeding seeding) {
+        this.seeding = seeding;
+    }
+    
+    /**
+     * Sets if an empty cluster shall be reseeded with the instance farthest from
+     * its centroid. Otherwise the centroid of an empty cluster stays where it is.
+     * 
+     * @param reseed_empty True to reseed empty clusters
+     */
+    public void set_reseed_empty(boolean reseed_empty) {
+        this.reseed_empty = reseed_empty;
+    }
+    
+    /**
+     * Limits how far a centroid can move in one iteration. Used by the
+     * visualization to animate the centroids.
+     * 
+     * @param max_step Max distance (0 for no limit)
+     */
+    public void set_max_step(double max_step) {
+        this.max_step = max_step;
+    }
+    
+    /**
+     * Sets the max number of iterations.
+     * 
+     * @param max_iterations Max number of iterations
+     */
+    public void set_max_iterations(int max_iterations) {
+        this.max_iterations = max_iterations;
+    }
+    
+    /**
+     * Sets the tolerance for stopping before the assignments are fully stable.
+     * A run always stops when no instance changes cluster.
+     * 
+     * @param epsilon Stop when no centroid moves longer than this (0 to disable)
+     * @param min_changed Stop when fewer than this fraction of instances change cluster (0 to disable)
+     */
+    public void set_tolerance(double epsilon, double min_changed) {
+        this.epsilon = epsilon;
+        this.min_changed = min_changed;
+    }
+    
+    /**
+     * Sets the strategy for the assignment step. The plain and the accelerated
+     * strategies produce the same assignments, but the accelerated ones skip most
+     * distance calculations. If no strategy is set, one is picked for each run
+     * with Assigner.auto.
+     * 
+     * @param assigner The assigner (null to pick one for each run)
+     */
+    public void set_assigner(Assigner assigner) {
+        this.assigner = assigner;
+    }
+    
+    /**
+     * Sets the pool used to run the assignment step in parallel.
+     * 
+     * @param pool The pool (null to run on the calling thread)
+     */
+    public void set_pool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+    
+    /**
+     * Sets if partial sums shall be merged in a fixed order. A deterministic run
+     * splits the dataset into blocks of fixed size and merges the sums block by
+     * block, so the result is bit-for-bit the same with or without a pool and
+     * for any number of threads. Otherwise the blocks are sized after the number
+     * of threads in the pool.
+     * 
+     * @param deterministic True for a fixed merge order
+     */
+    public void set_deterministic(boolean deterministic) {
+        this.deterministic = deterministic;
+    }
+    
+    /**
+     * Sets if spherical k-means is used, for clustering by cosine similarity.
+     * The dataset must have unit length instances (see Dataset.normalized).
+     * Centroids are scaled back to unit length after each update, and unless
+     * another assigner is set, instances are assigned to the centroid with the
+     * highest dot product.
+     * 
+     * @param spherical True for spherical k-means
+     */
+    public void set_spherical(boolean spherical) {
+        this.spherical = spherical;
+    }
+    
+    /**
+     * Sets the checkpointer that writes the state of the run after iterations.
+     * 
+     * @param checkpointer The checkpointer (null for no checkpoints)
+     */
+    public void set_checkpointer(Checkpointer checkpointer) {
+        this.checkpointer = checkpointer;
+    }
+    
+    /**
+     * Performs k-means clustering on a dataset.
+     * 
+     * @param data The dataset to cluster
+     * @param k Number of clusters
+     * @return Centroids, assignments and number of iterations
+     */
+    public KMeansResult run(Dataset data, int k) {
+        this.data = data;
+        labels = new int[data.size()];
+        Arrays.fill(labels, -1);
+        
+        for (KMeansListener l : listeners) {
+            l.init(data);
+        }
+        
+        // Place initial centroids
+        this.k = k;
+        centroids = seeding.seed(data, k, rnd);
+        if (spherical) {
+            for (int c = 0; c < k; c++) {
+                Dataset.normalize(centroids, c * data.dimensions(), data.dimensions());
+            }
+        }
+        
+        for (KMeansListener l : listeners) {
+            l.place_centroids(centroids);
+        }
+        
+        run_assigner = default_assigner();
+        run_assigner.init(data, k);
+        iteration = 0;
+        mean = given_mean;
+        spread = given_spread;
+        stopped = false;
+        
+        return iterate_all();
+    }
+    
+    /**
+     * Resumes a run from a checkpoint. The centroids, labels, randomizer and
+     * iteration count are restored, so the run continues exactly as if it
+     * hadn't been interrupted.
+     * 
+     * @param data The dataset the checkpointed run clustered
+     * @param file The checkpoint file
+     * @return Centroids, assignments and number of iterations
+     * @throws IOException If the checkpoint can't be read
+     */
+    public KMeansResult resume(Dataset data, Path file) throws IOException {
+        Checkpoint cp = Checkpoint.read(file);
+        if (cp.labels.length != data.size() || cp.d != data.dimensions()) {
+            throw new IllegalArgumentException("Checkpoint is for a " + cp.labels.length + "x" + cp.d + 
+                                               " dataset, not " + data.size() + "x" + data.dimensions());
+        }
+        
+        this.data = data;
+        this.k = cp.k();
+        centroids = cp.centroids;
+        labels = cp.labels;
+        rnd = cp.random();
+        
+        for (KMeansListener l : listeners) {
+            l.init(data);
+        }
+        for (KMeansListener l : listeners) {
+            l.place_centroids(centroids);
+        }
+        
+        // Accelerated assigners have no bounds for the restored labels
+        run_assigner = default_assigner();
+        run_assigner.init(data, k);
+        for (int i = 0; i < labels.length; i++) {
+            run_assigner.moved(i);
+        }
+        iteration = cp.iteration;
+        mean = given_mean;
+        spread = given_spread;
+        stopped = false;
+        
+        return iterate_all();
+    }
+    
+    /**
+     * Returns the assigner for a run: the one set, or else the spherical or
+     * automatically chosen one.
+     * 
+     * @return The assigner
+     */
+    private Assigner default_assigner() {
+        if (assigner != null) {
+            return assigner;
+        }
+        return spherical ? new SphericalAssigner() : Assigner.auto(data, k);
+    }
+    
+    /**
+     * Iterates until the run has converged or the max number of iterations is
+     * reached.
+     * 
+     * @return Centroids, assignments and number of iterations
+     */
+    private KMeansResult iterate_all() {
+        // Iterate until assignments doesn't change
+        boolean updated = true;
+        while (updated && !stopped && iteration < max_iterations) {
+            updated = iterate();
+        }
+        
+        for (KMeansListener l : listeners) {
+            l.done();
+        }
+        
+        // Collect result
+        int d = data.dimensions();
+        double[][] res = new double[k][];
+        for (int i = 0; i < k; i++) {
+            res[i] = Arrays.copyOfRange(centroids, i * d, (i + 1) * d);
+        }
+        return new KMeansResult(res, labels, iteration);
+    }
+    
+    /**
+     * Performs one iteration in k-means clustering. 
+     * 
+     * @return True if assignments have changed (continue iteration)
+     */
+    private boolean iterate() {
+        IterationEvent event = new IterationEvent();
+        event.begin();
+        iteration++;
+        
+        // Assign each instance to the closest cluster
+        long t0 = System.nanoTime();
+        ClusterSums sums = assign();
+        
+        if (reseed_empty) {
+            reseed_empty(sums);
+        }
+        
+        // Recalculate centroids
+        long t1 = System.nanoTime();
+        double shift = sums.recalc_centers(centroids, max_step, spherical);
+        
+        // Check if any instance changed cluster, or if changes are below tolerance
+        long t2 = System.nanoTime();
+        boolean updated = sums.changed > 0 && shift >= epsilon && sums.changed >= min_changed * data.size();
+        long t3 = System.nanoTime();
+        
+        for (KMeansListener l : listeners) {
+            if (sums.moved != null) {
+                l.moved(sums.moved, sums.changed);
+            }
+            l.iterate(centroids, labels);
+        }
+        
+        // Metrics are only gathered if someone is interested. Listeners only
+        // get them if enabled, the flight recorder whenever it records.
+        if (metrics || event.shouldCommit()) {
+            IterationMetrics m = metrics(sums, shift, t1 - t0, t2 - t1, t3 - t2);
+            if (metrics) {
+                for (KMeansListener l : listeners) {
+                    l.metrics(m);
+                }
+            }
+            if (event.shouldCommit()) {
+                event.set(m);
+                event.commit();
+            }
+        }
+        
+        if (checkpointer != null) {
+            checkpointer.iteration(iteration, data.dimensions(), centroids, labels, rnd);
+        }
+        
+        return updated;
+    }
+    
+    /**
+     * Collects the metrics of an iteration.
+     * 
+     * @param sums Merged sums and counts for all clusters
+     * @param shift Longest distance a centroid moved
+     * @param assign_nanos Time of the assignment step
+     * @param update_nanos Time of the update step
+     * @param check_nanos Time of the convergence check
+     * @return The metrics
+     */
+    private IterationMetrics metrics(ClusterSums sums, double shift, long assign_nanos, long update_nanos, long check_nanos) {
+        // Mean and spread of the dataset, once per run unless shared
+        if (mean == null) {
+            mean = new double[data.dimensions()];
+            spread = spread(data, mean);
+        }
+        
+        IterationMetrics m = new IterationMetrics();
+        m.iteration = iteration;
+        m.n = data.size();
+        m.k = k;
+        m.assign_nanos = assign_nanos;
+        m.update_nanos = update_nanos;
+        m.check_nanos = check_nanos;
+        m.ranges = sums.ranges;
+        m.mean_range_nanos = sums.ranges > 0 ? sums.range_nanos / sums.ranges : 0;
+        m.max_range_nanos = sums.max_range_nanos;
+        m.distances = sums.distances;
+        m.skipped = Math.max((long)data.size() * k - sums.distances, 0);
+        m.changed = sums.changed;
+        m.inertia = sums.inertia(mean, spread);
+        m.max_shift = shift;
+        return m;
+    }
+    
+    /**
+     * Moves the instance farthest from its centroid to each empty cluster. The
+     * instance is only taken from a cluster with more than one instance.
+     * 
+     * @param sums Merged sums and counts for all clusters
+     */
+    private void reseed_empty(ClusterSums sums) {
+        int d = data.dimensions();
+        double[] norms = new double[k];
+        Dataset.sq_norms(centroids, k, d, norms);
+        for (int c = 0; c < k; c++) {
+            if (sums.count[c] > 0) continue;
+            
+            // Find the instance farthest from its centroid
+            int far = -1;
+            double far_d = -1;
+            for (int i = 0; i < data.size(); i++) {
+                int a = labels[i];
+                if (sums.count[a] <= 1) continue;
+                double dist = data.sq_euclidean(i, centroids, a * d, norms[a]);
+                if (dist > far_d) {
+                    far_d = dist;
+                    far = i;
+                }
+            }
+            if (far < 0) return;
+            
+            // Move it to the empty cluster
+            sums.move(data, far, labels[far], c);
+            labels[far] = c;
+            sums.changed(far);
+            run_assigner.moved(far);
+        }
+    }
+    
+    /**
+     * Assigns all instances to the closest cluster, on the pool if there is one.
+     * 
+     * @return Merged sums and counts for all clusters
+     */
+    private ClusterSums assign() {
+        run_assigner.prepare(centroids);
+        
+        int n = data.size();
+        int block = block_size;
+        if (!deterministic && pool != null) {
+            block = Math.max(block, n / (pool.getParallelism() * 4) + 1);
+        }
+        
+        AssignTask task = new AssignTask(0, n, block);
+        if (pool == null) {
+            return task.compute();
+        }
+        return pool.invoke(task);
+    }
+    
+    /**
+     * Fork-join task assigning a range of instances. Ranges larger than one
+     * block are split in two halves on a block boundary, and the sums of the
+     * left half are always merged before the sums of the right half.
+     */
+    private class AssignTask extends RecursiveTask<ClusterSums> {
+        // Version of the serialized form
+        private static final long serialVersionUID = 1L;
+        
+        // First instance
+        int lo;
+        // Last instance (exclusive)
+        int hi;
+        // Number of instances in one block
+        int block;
+        
+        /**
+         * New assignment task.
+         * 
+         * @param lo First instance
+         * @param hi Last instance (exclusive)
+         * @param block Number of instances in one block
+         */
+        public AssignTask(int lo, int hi, int block) {
+            this.lo = lo;
+            this.hi = hi;
+            this.block = block;
+        }
+        
+        @Override
+        protected ClusterSums compute() {
+            int blocks = (hi - lo + block - 1) / block;
+            if (blocks <= 1) {
+                ClusterSums sums = new ClusterSums(k, data.dimensions());
+                if (track_moved) {
+                    sums.track_moved();
+                }
+                long start = System.nanoTime();
+                run_assigner.assign_range(lo, hi, centroids, labels, sums);
+                sums.ranges = 1;
+                sums.range_nanos = System.nanoTime() - start;
+                sums.max_range_nanos = sums.range_nanos;
+                return sums;
+            }
+            
+            // Split on a block boundary
+            int mid = lo + (blocks / 2) * block;
+            AssignTask left = new AssignTask(lo, mid, block);
+            AssignTask right = new AssignTask(mid, hi, block);
+            ClusterSums sums;
+            if (getPool() != null) {
+                right.fork();
+                sums = left.compute();
+                sums.merge(right.join());
+            }
+            else {
+                sums = left.compute();
+                sums.merge(right.compute());
+            }
+            return sums;
+        }
+    }
+}
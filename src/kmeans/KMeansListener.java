@@ -0,0 +1,55 @@
+package kmeans;
+
+/**
+ * Observer for the different steps in a k-means run. All methods have empty
+ * default implementations, so a listener only overrides the steps it cares about
+ * and a run without listeners is not slowed down at all.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public interface KMeansListener 
+{
+    /**
+     * Called when a new run starts.
+     * 
+     * @param data The dataset to cluster
+     */
+    default void init(Dataset data) {}
+    
+    /**
+     * Called when the initial centroids have been placed.
+     * 
+     * @param centroids The initial centroids, one row of attributes per cluster
+     */
+    default void place_centroids(double[] centroids) {}
+    
+    /**
+     * Called after each iteration before iterate with the instances that
+     * changed cluster in the iteration, if enabled with KMeans.set_track_moved.
+     * 
+     * @param moved Indices of the instances that changed cluster
+     * @param count Number of instances in moved
+     */
+    default void moved(int[] moved, int count) {}
+    
+    /**
+     * Called after each iteration.
+     * 
+     * @param centroids The centroids after the iteration
+     * @param labels Cluster index for each instance
+     */
+    default void iterate(double[] centroids, int[] labels) {}
+    
+    /**
+     * Called after each iteration with timing and work of the iteration, if
+     * metrics are enabled with KMeans.set_metrics.
+     * 
+     * @param m The metrics
+     */
+    default void metrics(IterationMetrics m) {}
+    
+    /**
+     * Called when the run has converged.
+     */
+    default void done() {}
+}
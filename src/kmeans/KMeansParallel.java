@@ -0,0 +1,240 @@
+package kmeans;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * k-means|| seeding (Bahmani et al.), the parallel variant of k-means++ for large
+ * datasets. Instead of picking one centroid per pass over the data, each round
+ * samples about l candidates at once, with probability proportional to their
+ * squared distance to the closest candidate so far. After a few rounds the
+ * candidates are weighted by the number of instances closest to them and reduced
+ * to k centroids with weighted k-means++.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class KMeansParallel implements Seeding 
+{
+    // Number of instances each task processes
+    static final int BLOCK = 4096;
+    
+    // Oversampling factor, as a multiple of k
+    double oversampling = 2;
+    // Number of sampling rounds
+    int rounds = 5;
+    // Pool used for the distance passes (null to run on the calling thread)
+    ForkJoinPool pool;
+    
+    /**
+     * k-means|| seeding running on the calling thread.
+     */
+    public KMeansParallel() {
+        
+    }
+    
+    /**
+     * k-means|| seeding.
+     * 
+     * @param pool Pool used for the distance passes (null to run on the calling thread)
+     * @param oversampling Candidates sampled per round, as a multiple of k
+     * @param rounds Number of sampling rounds
+     */
+    public KMeansParallel(ForkJoinPool pool, double oversampling, int rounds) {
+        this.pool = pool;
+        this.oversampling = oversampling;
+        this.rounds = rounds;
+    }
+    
+    @Override
+    public double[] seed(Dataset data, int k, Random rnd) {
+        return new Pass(data).seed(k, rnd);
+    }
+    
+    /**
+     * Uniform random value in [0,1) derived from a seed and an instance index.
+     * 
+     * @param seed Seed for the round
+     * @param i Index of the instance
+     * @return Random value
+     */
+    static double unit(long seed, int i) {
+        // SplitMix64 finalizer
+        long z = seed + (i + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (z >>> 11) * 0x1.0p-53;
+    }
+    
+    /**
+     * State of one seeding call, so a single strategy can seed concurrent runs.
+     */
+    private class Pass {
+        // The dataset
+        Dataset data;
+        // Candidate centroids, one row of attributes per candidate
+        double[] cand;
+        // Squared norm of each candidate
+        double[] cand_norms;
+        // Number of candidates
+        int no_cand;
+        // Squared distance from each instance to the closest candidate
+        double[] dist;
+        // Index of the closest candidate for each instance
+        int[] near;
+        
+        /**
+         * New seeding call.
+         * 
+         * @param data The dataset
+         */
+        Pass(Dataset data) {
+            this.data = data;
+        }
+        
+        /**
+         * Places the initial centroids.
+         * 
+         * @param k Number of clusters
+         * @param rnd Randomizer
+         * @return Centroids, one row of attributes per cluster
+         */
+        double[] seed(int k, Random rnd) {
+            int n = data.size();
+            int d = data.dimensions();
+            double l = oversampling * k;
+            
+            dist = new double[n];
+            near = new int[n];
+            Arrays.fill(dist, Double.MAX_VALUE);
+            
+            // First candidate: random instance
+            cand = new double[Math.max(k, 16) * d];
+            cand_norms = new double[Math.max(k, 16)];
+            no_cand = 0;
+            add_candidate(rnd.nextInt(n));
+            double phi = update(0);
+            
+            for (int r = 0; r < rounds && phi > 0; r++) {
+                // Sample instances independently, each with its own hashed random value
+                // so the result does not depend on the order instances are visited
+                long round_seed = rnd.nextLong();
+                int first = no_cand;
+                for (int i = 0; i < n; i++) {
+                    double p = l * dist[i] / phi;
+                    if (p > 0 && unit(round_seed, i) < p) {
+                        add_candidate(i);
+                    }
+                }
+                phi = update(first);
+            }
+            
+            // Too few candidates: fill up with random instances
+            while (no_cand < k) {
+                int first = no_cand;
+                add_candidate(rnd.nextInt(n));
+                update(first);
+            }
+            
+            // Weight candidates by the number of instances closest to them
+            double[] w = new double[no_cand];
+            for (int i = 0; i < n; i++) {
+                w[near[i]]++;
+            }
+            
+            // Reduce candidates to k centroids
+            DenseDataset cdata = new DenseDataset(Arrays.copyOf(cand, no_cand * d), d);
+            double[] centroids = KMeansPlusPlus.seed(cdata, w, k, rnd);
+            return centroids;
+        }
+        
+        /**
+         * Adds an instance as a candidate.
+         * 
+         * @param i Index of the instance
+         */
+        private void add_candidate(int i) {
+            int d = data.dimensions();
+            if ((no_cand + 1) * d > cand.length) {
+                cand = Arrays.copyOf(cand, cand.length * 2);
+                cand_norms = Arrays.copyOf(cand_norms, cand_norms.length * 2);
+            }
+            KMeansPlusPlus.copy_row(data, i, cand, no_cand * d);
+            cand_norms[no_cand] = Dataset.sq_norm(cand, no_cand * d, d);
+            no_cand++;
+        }
+        
+        /**
+         * Updates the distance to the closest candidate with the new candidates.
+         * 
+         * @param first Index of the first new candidate
+         * @return Sum of squared distances to the closest candidate
+         */
+        private double update(int first) {
+            UpdateTask task = new UpdateTask(0, data.size(), first);
+            if (pool == null) {
+                return task.compute();
+            }
+            return pool.invoke(task);
+        }
+        
+        /**
+         * Fork-join task updating the distances for a range of instances. Ranges are
+         * split on block boundaries, so the sum is the same for any pool size.
+         */
+        private class UpdateTask extends RecursiveTask<Double> {
+            // Version of the serialized form
+            private static final long serialVersionUID = 1L;
+            
+            // First instance
+            int lo;
+            // Last instance (exclusive)
+            int hi;
+            // Index of the first new candidate
+            int first;
+            
+            /**
+             * New update task.
+             * 
+             * @param lo First instance
+             * @param hi Last instance (exclusive)
+             * @param first Index of the first new candidate
+             */
+            public UpdateTask(int lo, int hi, int first) {
+                this.lo = lo;
+                this.hi = hi;
+                this.first = first;
+            }
+            
+            @Override
+            protected Double compute() {
+                int blocks = (hi - lo + BLOCK - 1) / BLOCK;
+                if (blocks > 1) {
+                    int mid = lo + (blocks / 2) * BLOCK;
+                    UpdateTask left = new UpdateTask(lo, mid, first);
+                    UpdateTask right = new UpdateTask(mid, hi, first);
+                    if (getPool() != null) {
+                        right.fork();
+                        double sum = left.compute();
+                        return sum + right.join();
+                    }
+                    return left.compute() + right.compute();
+                }
+                
+                int d = data.dimensions();
+                double sum = 0;
+                for (int i = lo; i < hi; i++) {
+                    for (int c = first; c < no_cand; c++) {
+                        double nd = data.sq_euclidean(i, cand, c * d, cand_norms[c]);
+                        if (nd < dist[i]) {
+                            dist[i] = nd;
+                            near[i] = c;
+                        }
+                    }
+                    sum += dist[i];
+                }
+                return sum;
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package kmeans;
+
+import java.util.*;
+
+/**
+ * k-means++ seeding. The first centroid is a random instance, and each following
+ * centroid is an instance picked with probability proportional to its squared
+ * distance to the closest centroid picked so far.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class KMeansPlusPlus implements Seeding 
+{
+    @Override
+    public double[] seed(Dataset data, int k, Random rnd) {
+        return seed(data, null, k, rnd);
+    }
+    
+    /**
+     * Weighted k-means++ seeding, where an instance with weight w counts as w
+     * identical instances.
+     * 
+     * @param data The dataset
+     * @param weights Weight of each instance (null for all 1)
+     * @param k Number of clusters
+     * @param rnd Randomizer
+     * @return Centroids, one row of attributes per cluster
+     */
+    public static double[] seed(Dataset data, double[] weights, int k, Random rnd) {
+        int n = data.size();
+        int d = data.dimensions();
+        double[] centroids = new double[k * d];
+        
+        // Weighted squared distance to the closest centroid so far
+        double[] dist = new double[n];
+        
+        // First centroid: random instance
+        int first = pick(weights, n, rnd);
+        copy_row(data, first, centroids, 0);
+        double c_norm = Dataset.sq_norm(centroids, 0, d);
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            dist[i] = weight(weights, i) * data.sq_euclidean(i, centroids, 0, c_norm);
+            total += dist[i];
+        }
+        
+        for (int c = 1; c < k; c++) {
+            // Pick instance with probability proportional to the distance
+            int next;
+            if (total > 0) {
+                next = pick(dist, n, rnd);
+            }
+            else {
+                // All instances are on top of a centroid
+                next = rnd.nextInt(n);
+            }
+            copy_row(data, next, centroids, c * d);
+            c_norm = Dataset.sq_norm(centroids, c * d, d);
+            
+            // Update distances
+            total = 0;
+            for (int i = 0; i < n; i++) {
+                double nd = weight(weights, i) * data.sq_euclidean(i, centroids, c * d, c_norm);
+                if (nd < dist[i]) {
+                    dist[i] = nd;
+                }
+                total += dist[i];
+            }
+        }
+        
+        return centroids;
+    }
+    
+    /**
+     * Picks an index with probability proportional to its weight.
+     * 
+     * @param w Weights (null for all 1)
+     * @param n Number of indices
+     * @param rnd Randomizer
+     * @return Picked index
+     */
+    static int pick(double[] w, int n, Random rnd) {
+        if (w == null) {
+            return rnd.nextInt(n);
+        }
+        
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            total += w[i];
+        }
+        double r = rnd.nextDouble() * total;
+        for (int i = 0; i < n; i++) {
+            r -= w[i];
+            if (r < 0 && w[i] > 0) {
+                return i;
+            }
+        }
+        
+        // Rounding errors: return last instance with a weight
+        for (int i = n - 1; i > 0; i--) {
+            if (w[i] > 0) {
+                return i;
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     * Returns the weight of an instance.
+     * 
+     * @param w Weights (null for all 1)
+     * @param i Index of the instance
+     * @return Weight
+     */
+    private static double weight(double[] w, int i) {
+        return w == null ? 1 : w[i];
+    }
+    
+    /**
+     * Copies the attributes of an instance to a centroid.
+     * 
+     * @param data The dataset
+     * @param i Index of the instance
+     * @param centroids Centroids array
+     * @param off Offset of the centroid
+     */
+    static void copy_row(Dataset data, int i, double[] centroids, int off) {
+        Arrays.fill(centroids, off, off + data.dimensions(), 0);
+        data.add_to(i, centroids, off);
+    }
+}
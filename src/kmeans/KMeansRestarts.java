@@ -0,0 +1,351 @@
+package kmeans;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs several independently seeded k-means runs concurrently and keeps the
+ * run with the lowest inertia (within-cluster sum of squared distances). All
+ * runs share the same dataset, which is only read.
+ *
+ * The inertia of a converged run is summed in blocks, and the summation is
+ * abandoned as soon as the partial sum is worse than the best run so far.
+ * Since the sum only grows, an abandoned run could never have won.
+ *
+ * Optionally, see set_abandon, runs are also stopped while they iterate when
+ * their extrapolated final inertia is worse than the best run. This is a
+ * heuristic that may stop the run that would have won, and makes the result
+ * depend on the order the runs finish in.
+ *
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class KMeansRestarts
+{
+    // Number of instances summed between checks against the best inertia
+    static final int BLOCK = 4096;
+
+    // Number of runs
+    int runs;
+    // Seed for the first run, run i is seeded with seed + i
+    long seed;
+    // Strategy for placing the initial centroids
+    Seeding seeding = new KMeansPlusPlus();
+    // If true, the runs use the fastest assignment strategy, see Assigner.fastest
+    boolean accelerated = false;
+    // If true, the runs use spherical k-means
+    boolean spherical = false;
+    // Max number of iterations in each run
+    int max_iterations = Integer.MAX_VALUE;
+    // Tolerances for stopping a run
+    double epsilon = 0;
+    double min_changed = 0;
+    // Pool running the restarts (null for the common pool)
+    ForkJoinPool pool;
+    // If true, runs are abandoned while iterating when they can't be expected to win
+    boolean abandon = false;
+    // k-d tree shared by the runs (null if not needed)
+    KdTree tree;
+    // Mean of all instances, shared by the runs for their metrics (null if not needed)
+    double[] mean;
+    // Sum of squared distances from each instance to the mean
+    double spread;
+
+    // Inertia of the best run so far
+    double best_inertia;
+    // Index of the best run so far
+    int best_run;
+    // The best run so far
+    KMeansResult best;
+    // Number of runs abandoned while iterating or summing their inertia
+    int abandoned;
+
+    /**
+     * Creates a new restart scheduler.
+     *
+     * @param runs Number of runs
+     * @param seed Seed for the first run
+     */
+    public KMeansRestarts(int runs, long seed) {
+        if (runs < 1) {
+            throw new IllegalArgumentException("At least one run is required");
+        }
+        this.runs = runs;
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the strategy for placing the initial centroids. The strategy is
+     * shared by all runs, which seed concurrently, so it must keep the state
+     * of a call out of its fields (as all strategies in this package do).
+     *
+     * @param seeding The seeding strategy
+     */
+    public void set_seeding(Seeding seeding) {
+        this.seeding = seeding;
+    }
+
+    /**
+     * Sets if the runs use the fastest assignment strategy for the dataset,
+     * see Assigner.fastest. A k-d tree is built once and shared by all runs.
+     * Reduced datasets that keep their exact values always use the plain
+     * assignment, which rechecks instances near a decision boundary.
+     *
+     * @param accelerated True to use the k-d tree, Hamerly or Elkan assignment
+     */
+    public void set_accelerated(boolean accelerated) {
+        this.accelerated = accelerated;
+    }
+
+    /**
+     * Sets if the runs use spherical k-means. The dataset must have unit
+     * length instances.
+     *
+     * @param spherical True for spherical k-means
+     */
+    public void set_spherical(boolean spherical) {
+        this.spherical = spherical;
+    }
+
+    /**
+     * Sets the max number of iterations in each run.
+     *
+     * @param max_iterations Max number of iterations
+     */
+    public void set_max_iterations(int max_iterations) {
+        this.max_iterations = max_iterations;
+    }
+
+    /**
+     * Sets the tolerances for stopping a run.
+     *
+     * @param epsilon Stop when no centroid moves longer than this
+     * @param min_changed Stop when fewer than this fraction of instances change cluster
+     */
+    public void set_tolerance(double epsilon, double min_changed) {
+        this.epsilon = epsilon;
+        this.min_changed = min_changed;
+    }
+
+    /**
+     * Sets the pool running the restarts.
+     *
+     * @param pool The pool (null for the common pool)
+     */
+    public void set_pool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Sets if runs are abandoned while iterating when their estimated final
+     * inertia is worse than the best run so far. The final inertia is
+     * estimated by extrapolating the last two decreases of the inertia in the
+     * iteration metrics as a geometric series. Off by default, since it may
+     * stop the run that would have won and the result then depends on the
+     * pool size. Spherical runs are never abandoned while iterating.
+     *
+     * @param abandon True to abandon runs while iterating
+     */
+    public void set_abandon(boolean abandon) {
+        this.abandon = abandon;
+    }
+
+    /**
+     * Returns the number of runs abandoned while iterating or summing their
+     * inertia in the last call to run.
+     *
+     * @return Number of abandoned runs
+     */
+    public int abandoned() {
+        return abandoned;
+    }
+
+    /**
+     * Runs all restarts and returns the best one. Ties are broken by the run
+     * index, so unless runs are abandoned while iterating, the result doesn't
+     * depend on the order the runs finish in.
+     *
+     * @param data The dataset to cluster
+     * @param k Number of clusters
+     * @return The run with the lowest inertia
+     */
+    public KMeansResult run(Dataset data, int k) {
+        best_inertia = Double.POSITIVE_INFINITY;
+        best_run = -1;
+        best = null;
+        abandoned = 0;
+
+        // k-d tree for the filtering assignment, once for all runs
+        tree = null;
+        if (accelerated && Assigner.fastest(data, k) instanceof KdTreeAssigner) {
+            tree = new KdTree(data);
+        }
+
+        // Mean and spread for the metrics, once for all runs
+        mean = null;
+        if (abandon && !spherical) {
+            mean = new double[data.dimensions()];
+            spread = KMeans.spread(data, mean);
+        }
+
+        ArrayList<Callable<Void>> tasks = new ArrayList<>();
+        for (int r = 0; r < runs; r++) {
+            int run = r;
+            tasks.add(() -> {
+                restart(data, k, run);
+                return null;
+            });
+        }
+
+        ForkJoinPool p = pool != null ? pool : ForkJoinPool.commonPool();
+        for (Future<Void> f : p.invokeAll(tasks)) {
+            try {
+                f.get();
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for restarts", ex);
+            }
+            catch (ExecutionException ex) {
+                throw new IllegalStateException("Restart failed", ex.getCause());
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Performs one run and offers it as the best run.
+     *
+     * @param data The dataset to cluster
+     * @param k Number of clusters
+     * @param run Index of the run
+     */
+    private void restart(Dataset data, int k, int run) {
+        KMeans km = new KMeans(new Random(seed + run));
+        km.set_seeding(seeding);
+        km.set_max_iterations(max_iterations);
+        km.set_tolerance(epsilon, min_changed);
+        km.set_spherical(spherical);
+        if (accelerated) {
+            Assigner a = Assigner.fastest(data, k);
+            km.set_assigner(a instanceof KdTreeAssigner ? new KdTreeAssigner(tree) : a);
+        }
+        Abandoner ab = null;
+        if (abandon && !spherical) {
+            ab = new Abandoner(km);
+            km.add_listener(ab);
+            km.set_metrics(true);
+            km.set_spread(mean, spread);
+        }
+        KMeansResult res = km.run(data, k);
+
+        // Sum inertia until it is worse than the best run
+        double inertia = ab != null && ab.lost ? Double.POSITIVE_INFINITY : inertia(data, km.centroids, res.labels, this);
+        if (inertia == Double.POSITIVE_INFINITY) {
+            synchronized (this) {
+                abandoned++;
+            }
+            return;
+        }
+        res.inertia = inertia;
+
+        synchronized (this) {
+            if (inertia < best_inertia || (inertia == best_inertia && run < best_run)) {
+                best_inertia = inertia;
+                best_run = run;
+                best = res;
+            }
+        }
+    }
+
+    /**
+     * Returns the inertia of a clustering, the sum of squared distances from
+     * each instance to its centroid.
+     *
+     * @param data The dataset
+     * @param centroids Centroids, one row of attributes per cluster
+     * @param labels Cluster index for each instance
+     * @return The inertia
+     */
+    public static double inertia(Dataset data, double[] centroids, int[] labels) {
+        return inertia(data, centroids, labels, null);
+    }
+
+    /**
+     * Returns the inertia of a clustering. The sum is abandoned if it gets
+     * worse than the best run of a scheduler.
+     *
+     * @param data The dataset
+     * @param centroids Centroids, one row of attributes per cluster
+     * @param labels Cluster index for each instance
+     * @param bound Scheduler with the best run so far, or null for no bound
+     * @return The inertia, or positive infinity if abandoned
+     */
+    private static double inertia(Dataset data, double[] centroids, int[] labels, KMeansRestarts bound) {
+        int d = data.dimensions();
+        int n = data.size();
+        double[] norms = new double[centroids.length / d];
+        Dataset.sq_norms(centroids, norms.length, d, norms);
+        double sum = 0;
+        for (int lo = 0; lo < n; lo += BLOCK) {
+            int hi = Math.min(n, lo + BLOCK);
+            for (int i = lo; i < hi; i++) {
+                sum += data.sq_euclidean(i, centroids, labels[i] * d, norms[labels[i]]);
+            }
+            if (bound != null && sum > bound.best()) {
+                return Double.POSITIVE_INFINITY;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the inertia of the best run so far.
+     *
+     * @return The inertia
+     */
+    private synchronized double best() {
+        return best_inertia;
+    }
+
+    /**
+     * Listener that stops a run when its estimated final inertia is worse
+     * than the best run so far. If the inertia dropped by a and then by b in
+     * the last two iterations, the remaining decrease is estimated as the
+     * geometric series b*r/(1-r) with r = b/a.
+     */
+    private class Abandoner implements KMeansListener {
+        // The run
+        KMeans km;
+        // Inertia after the previous iteration
+        double prev = Double.NaN;
+        // Decrease of the inertia in the previous iteration
+        double prev_drop = Double.NaN;
+        // If true, the run was stopped
+        boolean lost;
+
+        /**
+         * New abandoner for a run.
+         *
+         * @param km The run
+         */
+        Abandoner(KMeans km) {
+            this.km = km;
+        }
+
+        @Override
+        public void metrics(IterationMetrics m) {
+            double drop = prev - m.inertia;
+            // No estimate until two decreases are known
+            if (drop >= 0 && prev_drop > 0) {
+                double r = drop / prev_drop;
+                double left = r < 1 ? drop * r / (1 - r) : Double.POSITIVE_INFINITY;
+                if (m.inertia - left > best()) {
+                    lost = true;
+                    km.stop();
+                }
+            }
+            prev_drop = drop;
+            prev = m.inertia;
+        }
+    }
+}
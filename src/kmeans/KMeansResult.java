@@ -0,0 +1,31 @@
+package kmeans;
+
+/**
+ * Result of a k-means run.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class KMeansResult 
+{
+    // Final centroids, one row per cluster
+    public double[][] centroids;
+    // Cluster index for each instance, in dataset order
+    public int[] labels;
+    // Number of iterations performed
+    public int iterations;
+    // Sum of squared distances from each instance to its centroid (NaN if not calculated)
+    public double inertia = Double.NaN;
+    
+    /**
+     * Creates a new result.
+     * 
+     * @param centroids Final centroids
+     * @param labels Cluster index for each instance
+     * @param iterations Number of iterations performed
+     */
+    public KMeansResult(double[][] centroids, int[] labels, int iterations) {
+        this.centroids = centroids;
+        this.labels = labels;
+        this.iterations = iterations;
+    }
+}
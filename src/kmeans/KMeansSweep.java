@@ -0,0 +1,331 @@
+package kmeans;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Clusters a dataset for a range of k and reports inertia (for the elbow
+ * method), simplified silhouette and Davies-Bouldin index for each k.
+ * 
+ * The range is divided into contiguous chains that run in parallel. The first
+ * k of a chain is seeded with the seeding strategy, and each following k is
+ * warm-started from the centroids of the previous k, with the widest cluster
+ * split in two along its attribute with the highest variance. The squared
+ * norms of the instances are calculated once and shared by all runs that use
+ * the blocked assignment, and the k-d tree is built once for all runs that use
+ * the filtering assignment.
+ *
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class KMeansSweep 
+{
+    // Smallest number of clusters
+    int k_min;
+    // Largest number of clusters
+    int k_max;
+    // Seed for the randomizers, the chain starting at k is seeded with seed + k
+    long seed;
+    // Strategy for placing the initial centroids of each chain
+    Seeding seeding = new KMeansPlusPlus();
+    // Max number of iterations in each run
+    int max_iterations = Integer.MAX_VALUE;
+    // Number of chains (0 for the parallelism of the pool)
+    int chains = 0;
+    // Pool running the chains (null for the common pool)
+    ForkJoinPool pool;
+    
+    /**
+     * Creates a new k-sweep.
+     * 
+     * @param k_min Smallest number of clusters
+     * @param k_max Largest number of clusters
+     * @param seed Seed for the randomizers
+     */
+    public KMeansSweep(int k_min, int k_max, long seed) {
+        if (k_min < 1 || k_max < k_min) {
+            throw new IllegalArgumentException("Invalid range of k: " + k_min + "-" + k_max);
+        }
+        this.k_min = k_min;
+        this.k_max = k_max;
+        this.seed = seed;
+    }
+    
+    /**
+     * Sets the strategy for placing the initial centroids of each chain. The
+     * strategy is shared by all chains, which seed concurrently, so it must
+     * keep the state of a call out of its fields (as all strategies in this
+     * package do).
+     * 
+     * @param seeding The seeding strategy
+     */
+    public void set_seeding(Seeding seeding) {
+        this.seeding = seeding;
+    }
+    
+    /**
+     * Sets the max number of iterations in each run.
+     * 
+     * @param max_iterations Max number of iterations
+     */
+    public void set_max_iterations(int max_iterations) {
+        this.max_iterations = max_iterations;
+    }
+    
+    /**
+     * Sets the number of chains the range of k is divided into. More chains
+     * run more in parallel, but fewer runs are warm-started.
+     * 
+     * @param chains Number of chains (0 for the parallelism of the pool)
+     */
+    public void set_chains(int chains) {
+        this.chains = chains;
+    }
+    
+    /**
+     * Sets the pool running the chains.
+     * 
+     * @param pool The pool (null for the common pool)
+     */
+    public void set_pool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+    
+    /**
+     * Clusters the dataset for each k in the range.
+     * 
+     * @param data The dataset to cluster
+     * @return One entry for each k, in increasing k
+     */
+    public SweepEntry[] run(Dataset data) {
+        ForkJoinPool p = pool != null ? pool : ForkJoinPool.commonPool();
+        int no_k = k_max - k_min + 1;
+        int no_chains = Math.min(no_k, chains > 0 ? chains : p.getParallelism());
+        
+        // Shared squared norms for the blocked assignment
+        double[] norms = null;
+        if (Assigner.auto(data, k_max) instanceof BlockedAssigner) {
+            norms = BlockedAssigner.norms((DenseDataset)data);
+        }
+        double[] shared_norms = norms;
+        KdTree tree = null;
+        if (Assigner.auto(data, k_max) instanceof KdTreeAssigner) {
+            tree = new KdTree(data);
+        }
+        KdTree shared_tree = tree;
+        
+        // Divide the range into contiguous chains of about the same length
+        SweepEntry[] entries = new SweepEntry[no_k];
+        ArrayList<Callable<Void>> tasks = new ArrayList<>();
+        for (int c = 0; c < no_chains; c++) {
+            int first = k_min + (int)((long)no_k * c / no_chains);
+            int last = k_min + (int)((long)no_k * (c + 1) / no_chains) - 1;
+            tasks.add(() -> {
+                chain(data, first, last, shared_norms, shared_tree, entries);
+                return null;
+            });
+        }
+        
+        for (Future<Void> f : p.invokeAll(tasks)) {
+            try {
+                f.get();
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for sweep", ex);
+            }
+            catch (ExecutionException ex) {
+                throw new IllegalStateException("Sweep failed", ex.getCause());
+            }
+        }
+        return entries;
+    }
+    
+    /**
+     * Clusters the dataset for a chain of k, warm-starting each k from the
+     * previous one.
+     * 
+     * @param data The dataset to cluster
+     * @param first First k in the chain
+     * @param last Last k in the chain
+     * @param norms Shared squared norms of the instances, or null
+     * @param tree Shared k-d tree, or null
+     * @param entries Entries to fill in
+     */
+    private void chain(Dataset data, int first, int last, double[] norms, KdTree tree, SweepEntry[] entries) {
+        Random rnd = new Random(seed + first);
+        double[] prev = null;
+        int[] prev_labels = null;
+        
+        for (int k = first; k <= last; k++) {
+            long start = System.nanoTime();
+            KMeans km = new KMeans(rnd);
+            if (prev == null) {
+                km.set_seeding(seeding);
+            }
+            else {
+                double[] init = split_widest(data, prev, prev_labels, k - 1);
+                km.set_seeding((d, nk, r) -> init.clone());
+            }
+            km.set_max_iterations(max_iterations);
+            Assigner a = Assigner.auto(data, k);
+            if (norms != null && a instanceof BlockedAssigner) {
+                a = new BlockedAssigner((DenseDataset)data, norms);
+            }
+            if (tree != null && a instanceof KdTreeAssigner) {
+                a = new KdTreeAssigner(tree);
+            }
+            km.set_assigner(a);
+            KMeansResult res = km.run(data, k);
+            
+            SweepEntry e = new SweepEntry(k, res);
+            e.warm = prev != null;
+            evaluate(data, km.centroids, res.labels, k, e);
+            e.millis = (System.nanoTime() - start) / 1e6;
+            res.inertia = e.inertia;
+            entries[k - k_min] = e;
+            
+            prev = km.centroids;
+            prev_labels = res.labels;
+        }
+    }
+    
+    /**
+     * Splits the widest cluster, the one with the highest sum of squared
+     * distances, in two. The two new centroids are placed one standard
+     * deviation from the old centroid along the attribute with the highest
+     * variance in the cluster.
+     * 
+     * @param data The dataset
+     * @param centroids Centroids, one row of attributes per cluster
+     * @param labels Cluster index for each instance
+     * @param k Number of clusters
+     * @return Centroids for k+1 clusters
+     */
+    static double[] split_widest(Dataset data, double[] centroids, int[] labels, int k) {
+        int d = data.dimensions();
+        
+        // Sum of squared differences per cluster and attribute
+        double[] var = new double[k * d];
+        int[] count = new int[k];
+        for (int i = 0; i < data.size(); i++) {
+            int off = labels[i] * d;
+            count[labels[i]]++;
+            for (int j = 0; j < d; j++) {
+                double diff = data.get(i, j) - centroids[off + j];
+                var[off + j] += diff * diff;
+            }
+        }
+        
+        // Find widest cluster
+        int widest = 0;
+        double widest_sse = -1;
+        for (int c = 0; c < k; c++) {
+            double sse = 0;
+            for (int j = 0; j < d; j++) {
+                sse += var[c * d + j];
+            }
+            if (sse > widest_sse) {
+                widest_sse = sse;
+                widest = c;
+            }
+        }
+        
+        // Attribute with the highest variance
+        int off = widest * d;
+        int attr = 0;
+        for (int j = 1; j < d; j++) {
+            if (var[off + j] > var[off + attr]) attr = j;
+        }
+        double std = Math.sqrt(var[off + attr] / Math.max(count[widest], 1));
+        
+        double[] split = Arrays.copyOf(centroids, (k + 1) * d);
+        System.arraycopy(centroids, off, split, k * d, d);
+        split[off + attr] -= std;
+        split[k * d + attr] += std;
+        return split;
+    }
+    
+    /**
+     * Calculates inertia, mean simplified silhouette and Davies-Bouldin index
+     * of a clustering in one pass over the dataset. The simplified silhouette
+     * uses the distance to the own centroid and to the closest other centroid
+     * instead of the mean distances to all instances. Silhouette and
+     * Davies-Bouldin are NaN for a single cluster.
+     * 
+     * @param data The dataset
+     * @param centroids Centroids, one row of attributes per cluster
+     * @param labels Cluster index for each instance
+     * @param k Number of clusters
+     * @param e Entry to fill in
+     */
+    static void evaluate(Dataset data, double[] centroids, int[] labels, int k, SweepEntry e) {
+        int d = data.dimensions();
+        int n = data.size();
+        double[] dist = new double[k];
+        double[] norms = new double[k];
+        Dataset.sq_norms(centroids, k, d, norms);
+        // Sum of distances to the centroid for each cluster
+        double[] scatter = new double[k];
+        int[] count = new int[k];
+        double inertia = 0;
+        double silhouette = 0;
+        
+        for (int i = 0; i < n; i++) {
+            data.sq_euclidean_all(i, centroids, k, norms, dist);
+            int c = labels[i];
+            double sq = dist[c];
+            double a = Math.sqrt(sq);
+            double b = Double.POSITIVE_INFINITY;
+            for (int o = 0; o < k; o++) {
+                if (o != c && dist[o] < b) b = dist[o];
+            }
+            b = Math.sqrt(b);
+            
+            inertia += sq;
+            scatter[c] += a;
+            count[c]++;
+            double max = Math.max(a, b);
+            if (max > 0) silhouette += (b - a) / max;
+        }
+        e.inertia = inertia;
+        
+        if (k < 2) {
+            e.silhouette = Double.NaN;
+            e.davies_bouldin = Double.NaN;
+            return;
+        }
+        e.silhouette = silhouette / n;
+        
+        // Davies-Bouldin: mean over clusters of the worst ratio between the
+        // sum of two clusters' scatter and the distance between them
+        for (int c = 0; c < k; c++) {
+            if (count[c] > 0) scatter[c] /= count[c];
+        }
+        double db = 0;
+        for (int c = 0; c < k; c++) {
+            double worst = 0;
+            for (int o = 0; o < k; o++) {
+                if (o == c) continue;
+                double sep = Dataset.euclidean(centroids, c * d, centroids, o * d, d);
+                if (sep > 0) worst = Math.max(worst, (scatter[c] + scatter[o]) / sep);
+            }
+            db += worst;
+        }
+        e.davies_bouldin = db / k;
+    }
+    
+    /**
+     * Formats sweep entries as a table.
+     * 
+     * @param entries The entries
+     * @return The table
+     */
+    public static String table(SweepEntry[] entries) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%5s %5s %10s %18s %11s %15s%n", "k", "warm", "ms", "inertia", "silhouette", "davies-bouldin"));
+        for (SweepEntry e : entries) {
+            sb.append(String.format("%5d %5s %10.1f %18.6g %11.4f %15.4f%n", e.k, e.warm ? "yes" : "no", e.millis, e.inertia, e.silhouette, e.davies_bouldin));
+        }
+        return sb.toString();
+    }
+}
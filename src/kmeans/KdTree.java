@@ -0,0 +1,168 @@
+package kmeans;
+
+/**
+ * K-d tree over the instances of a dataset, used by the filtering assignment.
+ * Each node covers a contiguous range of the instances in tree order, and
+ * stores the bounding box and the sum of the instances in it. Nodes are split
+ * at the median of the widest side of their bounding box. The tree only
+ * depends on the dataset, so it is built once and can be shared by all runs
+ * on the same dataset.
+ *
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class KdTree
+{
+    // Max number of instances in a leaf
+    static final int LEAF = 16;
+
+    // The dataset
+    Dataset data;
+    // Number of attributes
+    int d;
+    // Index of the instance at each position in tree order
+    int[] perm;
+    // First position of each node
+    int[] start;
+    // Last position of each node (exclusive)
+    int[] end;
+    // Child nodes, -1 for leaves
+    int[] left;
+    int[] right;
+    // Bounding box of each node: d min values followed by d max values
+    double[] box;
+    // Sum of the instances in each node
+    double[] sum;
+    // Number of nodes
+    int nodes;
+
+    /**
+     * Builds a k-d tree over a dataset.
+     *
+     * @param data The dataset
+     */
+    public KdTree(Dataset data) {
+        this.data = data;
+        this.d = data.dimensions();
+        int n = data.size();
+
+        perm = new int[n];
+        for (int i = 0; i < n; i++) {
+            perm[i] = i;
+        }
+
+        // Leaves have at least LEAF / 2 instances, unless all instances in
+        // them are equal
+        int cap = 2 * (n / (LEAF / 2) + 1) + 1;
+        start = new int[cap];
+        end = new int[cap];
+        left = new int[cap];
+        right = new int[cap];
+        box = new double[cap * 2 * d];
+        sum = new double[cap * d];
+
+        build(0, n);
+    }
+
+    /**
+     * Returns the dataset the tree is built over.
+     *
+     * @return The dataset
+     */
+    public Dataset dataset() {
+        return data;
+    }
+
+    /**
+     * Builds the subtree for a range of positions.
+     *
+     * @param lo First position
+     * @param hi Last position (exclusive)
+     * @return Index of the node
+     */
+    private int build(int lo, int hi) {
+        int node = nodes++;
+        start[node] = lo;
+        end[node] = hi;
+        left[node] = -1;
+        right[node] = -1;
+
+        // Bounding box
+        int bo = node * 2 * d;
+        for (int j = 0; j < d; j++) {
+            box[bo + j] = Double.POSITIVE_INFINITY;
+            box[bo + d + j] = Double.NEGATIVE_INFINITY;
+        }
+        for (int p = lo; p < hi; p++) {
+            for (int j = 0; j < d; j++) {
+                double v = data.get(perm[p], j);
+                if (v < box[bo + j]) box[bo + j] = v;
+                if (v > box[bo + d + j]) box[bo + d + j] = v;
+            }
+        }
+
+        // Widest side of the box
+        int dim = 0;
+        double width = -1;
+        for (int j = 0; j < d; j++) {
+            double wj = box[bo + d + j] - box[bo + j];
+            if (wj > width) {
+                width = wj;
+                dim = j;
+            }
+        }
+
+        int so = node * d;
+        if (hi - lo <= LEAF || width <= 0) {
+            // Leaf
+            for (int p = lo; p < hi; p++) {
+                data.add_to(perm[p], sum, so);
+            }
+            return node;
+        }
+
+        // Split at the median
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi, mid, dim);
+        int l = build(lo, mid);
+        int r = build(mid, hi);
+        left[node] = l;
+        right[node] = r;
+        for (int j = 0; j < d; j++) {
+            sum[so + j] = sum[l * d + j] + sum[r * d + j];
+        }
+        return node;
+    }
+
+    /**
+     * Reorders a range of positions so that the instance at position m has
+     * the m:th smallest value of an attribute, with smaller or equal values
+     * before it and larger or equal values after it.
+     *
+     * @param lo First position
+     * @param hi Last position (exclusive)
+     * @param m Position to select
+     * @param dim The attribute
+     */
+    private void select(int lo, int hi, int m, int dim) {
+        hi--;
+        while (lo < hi) {
+            double pivot = data.get(perm[(lo + hi) >>> 1], dim);
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (data.get(perm[i], dim) < pivot) i++;
+                while (data.get(perm[j], dim) > pivot) j--;
+                if (i <= j) {
+                    int t = perm[i];
+                    perm[i] = perm[j];
+                    perm[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+            if (m <= j) hi = j;
+            else if (m >= i) lo = i;
+            else return;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package kmeans;
+
+import java.util.Arrays;
+
+/**
+ * Filtering assignment (Kanungo et al.) over a k-d tree, for low-dimensional
+ * data. The tree is walked from the root with all centroids as candidates. At
+ * each node the candidate closest to the center of the node's bounding box is
+ * found, and every other candidate that is farther away than it from all
+ * corners of the box is pruned. When a single candidate is left, the whole
+ * subtree is assigned to it in one step by adding the node's precalculated
+ * sum. Labels are only written for a subtree if it wasn't assigned whole to
+ * the same centroid in the previous iteration, so for well-separated
+ * clusters an iteration costs close to O(k log n) instead of O(n k).
+ *
+ * The ranges passed to assign_range are positions in tree order, so each
+ * parallel range is a contiguous part of the tree.
+ *
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class KdTreeAssigner extends Assigner
+{
+    // The k-d tree
+    KdTree tree;
+    // Current iteration
+    int iter;
+    // Centroid each node was assigned to as a whole
+    int[] owner;
+    // Iteration each node was assigned as a whole in
+    int[] stamp;
+
+    /**
+     * Creates a new filtering assigner that builds its k-d tree when a run
+     * starts.
+     */
+    public KdTreeAssigner() {
+
+    }
+
+    /**
+     * Creates a new filtering assigner with a prebuilt k-d tree, so runs on
+     * the same dataset can share it.
+     *
+     * @param tree The k-d tree
+     */
+    public KdTreeAssigner(KdTree tree) {
+        this.tree = tree;
+    }
+
+    @Override
+    public void init(Dataset data, int k) {
+        super.init(data, k);
+        if (tree == null || tree.dataset() != data) {
+            tree = new KdTree(data);
+        }
+        owner = new int[tree.nodes];
+        stamp = new int[tree.nodes];
+        Arrays.fill(stamp, -2);
+        iter = 0;
+    }
+
+    @Override
+    public void prepare(double[] centroids) {
+        iter++;
+    }
+
+    @Override
+    public void assign_range(int lo, int hi, double[] centroids, int[] labels, ClusterSums sums) {
+        // Candidate lists for each depth of the tree
+        int[] cand = new int[k * 64];
+        for (int c = 0; c < k; c++) {
+            cand[c] = c;
+        }
+        filter(0, cand, 0, k, lo, hi, centroids, labels, sums);
+    }
+
+    @Override
+    public void moved(int i) {
+        // Subtrees assigned as a whole are no longer known to have one label
+        iter += 2;
+    }
+
+    /**
+     * Prunes the candidates for a node and assigns the instances of the node
+     * that are in a range.
+     *
+     * @param node The node
+     * @param cand Candidate lists
+     * @param off Offset of the candidates for this node
+     * @param nc Number of candidates for this node
+     * @param lo First position in tree order to assign
+     * @param hi Last position in tree order to assign (exclusive)
+     * @param centroids Centroids, one row of attributes per cluster
+     * @param labels Cluster index for each instance
+     * @param sums Sums to add the instances to
+     */
+    private void filter(int node, int[] cand, int off, int nc, int lo, int hi, double[] centroids, int[] labels, ClusterSums sums) {
+        int s = Math.max(tree.start[node], lo);
+        int e = Math.min(tree.end[node], hi);
+        if (s >= e) return;
+
+        int bo = node * 2 * d;
+        double[] box = tree.box;
+
+        // Candidate closest to the center of the box
+        int best = -1;
+        double best_d = Double.MAX_VALUE;
+        for (int q = off; q < off + nc; q++) {
+            int c = cand[q];
+            int co = c * d;
+            double dist = 0;
+            for (int j = 0; j < d; j++) {
+                double diff = centroids[co + j] - (box[bo + j] + box[bo + d + j]) * 0.5;
+                dist += diff * diff;
+            }
+            if (dist < best_d || (dist == best_d && c < best)) {
+                best_d = dist;
+                best = c;
+            }
+        }
+
+        // Prune candidates that are farther than the best one from the corner
+        // of the box in their direction, since they are then farther from all
+        // of the box
+        int noff = off + nc;
+        int nn = 0;
+        int bco = best * d;
+        for (int q = off; q < off + nc; q++) {
+            int c = cand[q];
+            if (c == best) {
+                cand[noff + nn++] = c;
+                continue;
+            }
+            int co = c * d;
+            double dz = 0;
+            double db = 0;
+            for (int j = 0; j < d; j++) {
+                double v = centroids[co + j] > centroids[bco + j] ? box[bo + d + j] : box[bo + j];
+                double diff_z = centroids[co + j] - v;
+                double diff_b = centroids[bco + j] - v;
+                dz += diff_z * diff_z;
+                db += diff_b * diff_b;
+            }
+            if (dz < db) {
+                cand[noff + nn++] = c;
+            }
+        }
+
+        // A single candidate owns the whole node
+        if (nn == 1) {
+            if (s == tree.start[node] && e == tree.end[node]) {
+                assign_node(node, best, labels, sums);
+            }
+            else {
+                for (int p = s; p < e; p++) {
+                    assign(tree.perm[p], best, labels, sums);
+                }
+            }
+            return;
+        }
+
+        // Leaf: closest candidate for each instance
+        if (tree.left[node] < 0 || noff + 2 * nn > cand.length) {
+            for (int p = s; p < e; p++) {
+                int i = tree.perm[p];
+                int bc = -1;
+                double bd = Double.MAX_VALUE;
+                for (int q = noff; q < noff + nn; q++) {
+                    int c = cand[q];
+                    double dist = data.sq_euclidean(i, centroids, c * d);
+                    sums.distances++;
+                    if (dist < bd || (dist == bd && c < bc)) {
+                        bd = dist;
+                        bc = c;
+                    }
+                }
+                assign(i, bc, labels, sums);
+            }
+            return;
+        }
+
+        filter(tree.left[node], cand, noff, nn, lo, hi, centroids, labels, sums);
+        filter(tree.right[node], cand, noff, nn, lo, hi, centroids, labels, sums);
+    }
+
+    /**
+     * Assigns all instances of a node to a cluster, adding the node's sum in
+     * one step. Labels are only updated if the node wasn't assigned as a whole
+     * to the same cluster in the previous iteration.
+     *
+     * @param node The node
+     * @param c Index of the cluster
+     * @param labels Cluster index for each instance
+     * @param sums Sums to add the instances to
+     */
+    private void assign_node(int node, int c, int[] labels, ClusterSums sums) {
+        sums.add_sum(c, tree.sum, node * d, tree.end[node] - tree.start[node]);
+
+        if (stamp[node] != iter - 1 || owner[node] != c) {
+            for (int p = tree.start[node]; p < tree.end[node]; p++) {
+                int i = tree.perm[p];
+                if (labels[i] != c) {
+                    labels[i] = c;
+                    sums.changed(i);
+                }
+            }
+        }
+        owner[node] = c;
+        stamp[node] = iter;
+    }
+}
@@ -0,0 +1,74 @@
+package kmeans;
+
+/**
+ * Plain Lloyd assignment: the distance from each instance to each centroid is
+ * calculated in every iteration. For datasets stored with reduced precision
+ * that keep their exact values, instances whose two closest centroids are
+ * within the rounding error of each other are rechecked against the exact
+ * values.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class LloydAssigner extends Assigner 
+{
+    // Dataset with the exact values (null to never recheck)
+    Dataset exact;
+    // Instances are rechecked if the distances to their two closest centroids
+    // differ by at most this much
+    double margin;
+    
+    @Override
+    public void init(Dataset data, int k) {
+        super.init(data, k);
+        exact = null;
+        if (data instanceof ReducedDataset) {
+            ReducedDataset rd = (ReducedDataset)data;
+            exact = rd.exact();
+            margin = 2 * rd.max_error();
+        }
+    }
+    
+    @Override
+    public void assign_range(int lo, int hi, double[] centroids, int[] labels, ClusterSums sums) {
+        double[] dist = new double[k];
+        
+        // Iterate over each instance to find the closest cluster
+        for (int i = lo; i < hi; i++) {
+            // Squared distance to all clusters
+            data.sq_euclidean_all(i, centroids, k, c_norms, dist);
+            
+            int bestC = 0;
+            double bestD = Double.MAX_VALUE;
+            double secondD = Double.MAX_VALUE;
+            for (int c = 0; c < k; c++) {
+                // Check if new closest distance
+                if (dist[c] < bestD) {
+                    secondD = bestD;
+                    bestD = dist[c];
+                    bestC = c;
+                }
+                else if (dist[c] < secondD) {
+                    secondD = dist[c];
+                }
+            }
+            
+            // Rounding moves each distance by at most the rounding error, so
+            // the closest cluster can only change if the gap is below twice that
+            if (exact != null && k > 1 && Math.sqrt(secondD) - Math.sqrt(bestD) <= margin) {
+                exact.sq_euclidean_all(i, centroids, k, c_norms, dist);
+                sums.distances += k;
+                bestD = Double.MAX_VALUE;
+                for (int c = 0; c < k; c++) {
+                    if (dist[c] < bestD) {
+                        bestD = dist[c];
+                        bestC = c;
+                    }
+                }
+            }
+            
+            //Assign article to best cluster
+            assign(i, bestC, labels, sums);
+        }
+        sums.distances += (long)(hi - lo) * k;
+    }
+}
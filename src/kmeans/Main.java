@@ -0,0 +1,464 @@
+package kmeans;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Visualization of K-Means Clustering
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class Main 
+{
+    // Instances in the dataset
+    DenseDataset data;
+    // Max counts
+    int[] max_counts;
+    // Min counts
+    int[] min_counts;
+    // Randomizer
+    Random rnd = new Random();
+    // K-means visualization GUI
+    VizGUI vg;
+    
+    /**
+     * Runs the visualization, or clusters a dataset file without GUI if a file
+     * is specified.
+     * 
+     * @param args the command line arguments: [dataset file] [k or k_min-k_max] [restarts]
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length > 1 && args[1].contains("-")) {
+            String[] range = args[1].split("-");
+            run_sweep(Paths.get(args[0]), Integer.parseInt(range[0]), Integer.parseInt(range[1]));
+            return;
+        }
+        if (args.length > 0) {
+            int k = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+            int restarts = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+            int workers = Integer.getInteger("kmeans.workers", 0);
+            int batch_size = Integer.getInteger("kmeans.minibatch", 0);
+            if (batch_size > 0) {
+                run_minibatch(Paths.get(args[0]), k, batch_size, Integer.getInteger("kmeans.minibatch.passes", 1));
+            }
+            else if (workers > 0) {
+                run_sharded(Paths.get(args[0]), k, workers);
+            }
+            else {
+                run_file(Paths.get(args[0]), k, restarts);
+            }
+            return;
+        }
+        
+        Main m = new Main();
+        m.run_visualization();
+    }
+    
+    /**
+     * Clusters a dataset file and prints the result. With more than one restart
+     * the restarts run concurrently and the one with the lowest inertia is kept.
+     * 
+     * @param file The dataset file
+     * @param k Number of clusters
+     * @param restarts Number of restarts
+     * @throws IOException If the file can't be read
+     */
+    private static void run_file(Path file, int k, int restarts) throws IOException {
+        long start = System.nanoTime();
+        Dataset data = load(file);
+        long loaded = System.nanoTime();
+        System.out.println("Loaded " + data.size() + "x" + data.dimensions() + " in " + (loaded - start) / 1000000 + " ms");
+        
+        // Spherical k-means on unit length instances, if requested
+        boolean spherical = Boolean.getBoolean("kmeans.spherical");
+        if (spherical) {
+            data = data.normalized();
+        }
+        
+        // Reduced precision or off-heap storage, if requested
+        data = reduce(data, System.getProperty("kmeans.storage", "float64"));
+        
+        KMeansResult res;
+        if (restarts > 1) {
+            KMeansRestarts kr = new KMeansRestarts(restarts, new Random().nextLong());
+            kr.set_accelerated(!spherical);
+            kr.set_spherical(spherical);
+            res = kr.run(data, k);
+        }
+        else {
+            KMeans km = new KMeans(new Random());
+            km.set_pool(ForkJoinPool.commonPool());
+            km.set_spherical(spherical);
+            if (spherical) {
+                km.set_assigner(new SphericalAssigner());
+            }
+            else {
+                km.set_assigner(Assigner.fastest(data, k));
+            }
+            
+            // Per-iteration metrics log, if requested
+            String log = System.getProperty("kmeans.metrics");
+            JsonLinesLog jl = log != null ? new JsonLinesLog(Paths.get(log)) : null;
+            if (jl != null) {
+                km.add_listener(jl);
+                km.set_metrics(true);
+            }
+            
+            // Checkpoints, if requested
+            String cp_file = System.getProperty("kmeans.checkpoint");
+            Checkpointer cp = null;
+            if (cp_file != null) {
+                int every = Integer.getInteger("kmeans.checkpoint.every", 10);
+                double seconds = Double.parseDouble(System.getProperty("kmeans.checkpoint.seconds", "300"));
+                cp = new Checkpointer(Paths.get(cp_file), every, seconds);
+                km.set_checkpointer(cp);
+            }
+            
+            try {
+                if (cp != null && Boolean.getBoolean("kmeans.resume") && Files.exists(Paths.get(cp_file))) {
+                    res = km.resume(data, Paths.get(cp_file));
+                    System.out.println("Resumed from " + cp_file);
+                }
+                else {
+                    res = km.run(data, k);
+                }
+            }
+            finally {
+                if (cp != null) cp.close();
+                if (jl != null) jl.close();
+            }
+        }
+        long done = System.nanoTime();
+        System.out.println("Converged after " + res.iterations + " iterations in " + (done - loaded) / 1000000 + " ms");
+        if (restarts > 1) {
+            System.out.println("Best inertia of " + restarts + " restarts: " + res.inertia);
+        }
+        for (double[] c : res.centroids) {
+            System.out.println(Arrays.toString(c));
+        }
+        if (data instanceof OffHeapDataset) {
+            ((OffHeapDataset)data).close();
+        }
+    }
+    
+    /**
+     * Clusters a dataset file with mini-batch k-means and prints the centroids.
+     * Binary dataset files are read in batches straight from the file, so only
+     * one batch is held in memory. CSV and SVMlight files are loaded first and
+     * read in batches from memory.
+     * 
+     * @param file The dataset file
+     * @param k Number of clusters
+     * @param batch_size Number of instances in each batch
+     * @param passes Number of times the dataset is read from start to end
+     * @throws IOException If the file can't be read
+     */
+    private static void run_minibatch(Path file, int k, int batch_size, int passes) throws IOException {
+        long start = System.nanoTime();
+        MiniBatchKMeans km = new MiniBatchKMeans(k, new Random());
+        KMeansResult res;
+        String name = file.toString().toLowerCase();
+        if (name.endsWith(".csv") || name.endsWith(".svm") || name.endsWith(".libsvm")) {
+            Dataset data = load(file);
+            long batches = ((long)data.size() * passes + batch_size - 1) / batch_size;
+            res = km.fit(new DatasetBatches(data), batch_size, (int)Math.min(Integer.MAX_VALUE, batches));
+        }
+        else {
+            try (FileBatches src = new FileBatches(file, passes)) {
+                res = km.fit(src, batch_size, Integer.MAX_VALUE);
+            }
+        }
+        if (res.centroids == null) {
+            throw new IOException("No instances in " + file);
+        }
+        long done = System.nanoTime();
+        System.out.println("Fitted " + res.iterations + " batches of " + batch_size + " in " + (done - start) / 1000000 + " ms");
+        for (double[] c : res.centroids) {
+            System.out.println(Arrays.toString(c));
+        }
+    }
+    
+    /**
+     * Clusters a dataset file split into shards over worker processes on this
+     * machine, and prints the result. The workers map their shards of a binary
+     * dataset file, so CSV and SVMlight files are converted to a temporary
+     * binary file first.
+     * 
+     * @param file The dataset file
+     * @param k Number of clusters
+     * @param workers Number of worker processes
+     * @throws IOException If the file can't be converted or a worker fails
+     */
+    private static void run_sharded(Path file, int k, int workers) throws IOException {
+        Dataset data = load(file);
+        if (data instanceof MappedDataset) {
+            run_workers(file, k, workers);
+            return;
+        }
+        
+        Path tmp = Files.createTempFile("kmeans", ".bin");
+        try {
+            MappedDataset.write(tmp, data, MappedDataset.FLOAT64);
+            System.out.println("Converted " + file + " to a binary dataset file for the workers");
+            data = null;
+            run_workers(tmp, k, workers);
+        }
+        finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+    
+    /**
+     * Clusters a binary dataset file split into shards over worker processes
+     * on this machine, and prints the result.
+     * 
+     * @param file The binary dataset file
+     * @param k Number of clusters
+     * @param workers Number of worker processes
+     * @throws IOException If a worker fails
+     */
+    private static void run_workers(Path file, int k, int workers) throws IOException {
+        long start = System.nanoTime();
+        try (ShardedKMeans km = ShardedKMeans.launch(file, workers, new Random())) {
+            long loaded = System.nanoTime();
+            System.out.println("Started " + workers + " workers for " + km.size() + " instances in " + (loaded - start) / 1000000 + " ms");
+            
+            KMeansResult res = km.run(k);
+            long done = System.nanoTime();
+            System.out.println("Converged after " + res.iterations + " iterations in " + (done - loaded) / 1000000 + " ms");
+            for (double[] c : res.centroids) {
+                System.out.println(Arrays.toString(c));
+            }
+        }
+    }
+    
+    /**
+     * Clusters a dataset file for a range of k and prints a table with timing
+     * and quality for each k.
+     * 
+     * @param file The dataset file
+     * @param k_min Smallest number of clusters
+     * @param k_max Largest number of clusters
+     * @throws IOException If the file can't be read
+     */
+    private static void run_sweep(Path file, int k_min, int k_max) throws IOException {
+        Dataset data = load(file);
+        long start = System.nanoTime();
+        KMeansSweep sweep = new KMeansSweep(k_min, k_max, new Random().nextLong());
+        SweepEntry[] entries = sweep.run(data);
+        long done = System.nanoTime();
+        System.out.print(KMeansSweep.table(entries));
+        System.out.println("Sweep took " + (done - start) / 1000000 + " ms");
+    }
+    
+    /**
+     * Loads a dataset file, either CSV, sparse SVMlight or binary.
+     * 
+     * @param file The dataset file
+     * @return The dataset
+     * @throws IOException If the file can't be read
+     */
+    static Dataset load(Path file) throws IOException {
+        String name = file.toString().toLowerCase();
+        if (name.endsWith(".csv")) {
+            CsvReader r = new CsvReader();
+            r.set_header(CsvReader.detect_header(file, ','));
+            return r.read(file);
+        }
+        if (name.endsWith(".svm") || name.endsWith(".libsvm")) {
+            return SparseDataset.read(file);
+        }
+        return MappedDataset.open(file);
+    }
+    
+    /**
+     * Converts a dataset to a storage precision, or copies it off-heap. With
+     * -Dkmeans.recheck=true the original dataset is kept, so instances near a
+     * decision boundary are rechecked against the exact values.
+     * 
+     * @param data The dataset
+     * @param storage Storage: float64 (unchanged), offheap, float32 or int8
+     * @return The dataset in the storage precision
+     */
+    static Dataset reduce(Dataset data, String storage) {
+        ReducedDataset res;
+        if (storage.equals("offheap")) {
+            return data instanceof MappedDataset || data instanceof OffHeapDataset ? data : OffHeapDataset.of(data);
+        }
+        else if (storage.equals("float32")) {
+            res = FloatDataset.of(data);
+        }
+        else if (storage.equals("int8")) {
+            res = QuantizedDataset.of(data);
+        }
+        else if (storage.equals("float64")) {
+            return data;
+        }
+        else {
+            throw new IllegalArgumentException("Unknown storage " + storage + ", expected float64, offheap, float32 or int8");
+        }
+        if (Boolean.getBoolean("kmeans.recheck")) {
+            res.set_exact(data);
+        }
+        System.out.println("Stored as " + storage + ", max rounding error " + res.max_error());
+        return res;
+    }
+    
+    /**
+     * Runs k-means visualization.
+     */
+    private void run_visualization() {
+        // The seed values to use in the visualization runs
+        int[][] runs = {
+            {1,42},
+            {7,43},
+            {8,44},
+            {10,45},
+            {11,46}
+        };
+        
+        // Init the GUI
+        vg = new VizGUI();
+        // Pause between the steps so the demo can be followed
+        vg.set_paced(true);
+        vg.start();
+
+        // Wait some time before start
+        try {
+            Thread.sleep(5000);
+        }
+        catch (InterruptedException e) {}
+
+        // Run visualization
+        for (int i = 0; i < runs.length; i++) {
+            // Get current seed values
+            int seed1 = runs[i][0];
+            int seed2 = runs[i][1];
+            // Generate new random data
+            random_data(seed1, seed2);
+            // Run k-means
+            kMeansClustering(4);
+        }
+    }
+        
+    /**
+     * Randomizes k-means clustering data for visualization.
+     */
+    private void random_data(int seed1, int seed2) {
+        rnd = new Random(seed1);
+        
+        Random r = new Random(seed2);
+        data = new DenseDataset(500, 2);
+        
+        // Create three clusters of Gaussian randomly placed instances
+        int i = 0;
+        for (; i < 160; i++) {
+            // Coordinate
+            double[] c = random_coord(r, 200, 170);
+            // Add instance
+            data.set_row(i, c);
+        }
+        for (; i < 320; i++) {
+            // Coordinate
+            double[] c = random_coord(r, 430, 270);
+            // Add instance
+            data.set_row(i, c);
+        }
+        for (; i < 500; i++) {
+            // Coordinate
+            double[] c = random_coord(r, 300, 430);
+            // Add instance
+            data.set_row(i, c);
+        }
+        
+        // Set min and max counts
+        min_counts = new int[2];
+        max_counts = new int[2];
+        min_counts[0] = 40;
+        min_counts[1] = 40;
+        max_counts[0] = RenderPanel.w - 40;
+        max_counts[1] = RenderPanel.h - 40;
+    }
+    
+    /**
+     * Generates a synthetic dataset of k Gaussian clusters with the same
+     * generator as the visualization data. Attributes are generated in
+     * (x,y) pairs around randomly placed cluster centers.
+     * 
+     * @param seed Seed for the randomizer
+     * @param n Number of instances
+     * @param d Number of attributes
+     * @param k Number of clusters
+     * @return The dataset
+     */
+    static DenseDataset gaussian_data(long seed, int n, int d, int k) {
+        Random r = new Random(seed);
+        
+        // Random cluster centers within the render area
+        double[] centers = new double[k * d];
+        for (int c = 0; c < k; c++) {
+            for (int j = 0; j < d; j++) {
+                int size = j % 2 == 0 ? RenderPanel.w : RenderPanel.h;
+                centers[c * d + j] = 100 + r.nextDouble() * (size - 200);
+            }
+        }
+        
+        DenseDataset data = new DenseDataset(n, d);
+        for (int i = 0; i < n; i++) {
+            int off = r.nextInt(k) * d;
+            for (int j = 0; j < d; j += 2) {
+                // Coordinate
+                double sy = j + 1 < d ? centers[off + j + 1] : 0;
+                double[] c = random_coord(r, centers[off + j], sy);
+                // Add attributes
+                data.set(i, j, c[0]);
+                if (j + 1 < d) data.set(i, j + 1, c[1]);
+            }
+        }
+        return data;
+    }
+    
+    /**
+     * Generates a Gaussian random coordinate.
+     * 
+     * @param r Randomizer
+     * @param sx Start x-coord
+     * @param sy Start y-coord
+     * @return Random coordinate
+     */
+    static double[] random_coord(Random r, double sx, double sy) {
+        double[] c = new double[2];
+        // Coordinates
+        c[0] = sx + r.nextGaussian() * 60 + (r.nextDouble() * 20.0 - 10.0);
+        c[1] = sy + r.nextGaussian() * 60 + (r.nextDouble() * 10.0 - 5.0);
+
+        // Check bounds
+        if (c[0] < 10) c[0] = 10;
+        if (c[1] < 10) c[1] = 10;
+        if (c[0] > RenderPanel.w - 10) c[0] = RenderPanel.w - 10;
+        if (c[1] > RenderPanel.h - 10) c[1] = RenderPanel.h - 10;
+        
+        // Return coordinate
+        return c;
+    }
+    
+    /**
+     * Performs k-means clustering on the dataset.
+     * 
+     * @param n Number of clusters
+     */
+    public void kMeansClustering(int n) {
+        KMeans km = new KMeans(rnd);
+        km.set_seeding(new RandomSeeding(min_counts, max_counts));
+        // Move centroids in small steps to animate the visualization
+        km.set_max_step(10);
+        // Let the density grid update only the instances that changed cluster
+        km.set_track_moved(true);
+        km.add_listener(vg);
+        
+        km.run(data, n);
+    }
+}
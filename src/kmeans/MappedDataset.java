@@ -0,0 +1,317 @@
+package kmeans;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+ * Dataset read straight from a memory-mapped binary file, so the values are
+ * never parsed or copied to the heap. The file format is a 24 byte little-endian
+ * header followed by the values of all instances, row-major:
+ * 
+ * <pre>
+ * bytes 0-3    magic "KMDS"
+ * bytes 4-7    value type (1 = float32, 2 = float64)
+ * bytes 8-15   number of instances n
+ * bytes 16-19  number of attributes d
+ * bytes 20-23  reserved (0)
+ * </pre>
+ * 
+ * A single mapping is limited to 2 GB, so larger files are mapped as a chain of
+ * segments. Each segment holds a whole number of instances, so an instance never
+ * spans two segments.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class MappedDataset extends Dataset 
+{
+    // Magic bytes at the start of the file
+    static final int MAGIC = 0x53444D4B;
+    // Size of the header in bytes
+    static final int HEADER = 24;
+    // Value types
+    public static final int FLOAT32 = 1;
+    public static final int FLOAT64 = 2;
+    
+    // Value type
+    int type;
+    // Number of instances in each segment
+    int seg_rows;
+    // Segments for float64 files, read by the distance kernel (null for float32)
+    ByteBuffer[] dsegs;
+    // Segments for float32 files (null for float64)
+    FloatBuffer[] fsegs;
+    
+    /**
+     * Creates a dataset from mapped segments.
+     * 
+     * @param n Number of instances
+     * @param d Number of attributes
+     * @param type Value type
+     * @param seg_rows Number of instances in each segment
+     */
+    private MappedDataset(int n, int d, int type, int seg_rows) {
+        super(n, d);
+        this.type = type;
+        this.seg_rows = seg_rows;
+    }
+    
+    /**
+     * Opens a binary dataset file.
+     * 
+     * @param file The file
+     * @return The dataset
+     * @throws IOException If the file can't be read or is not a dataset file
+     */
+    public static MappedDataset open(Path file) throws IOException {
+        return open(file, 0, 1, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Opens one shard of a binary dataset file. The instances are split into
+     * contiguous shards of about the same size, and only the instances of the
+     * requested shard are mapped.
+     * 
+     * @param file The file
+     * @param shard Index of the shard
+     * @param shards Number of shards
+     * @return The instances of the shard
+     * @throws IOException If the file can't be read or is not a dataset file
+     */
+    public static MappedDataset open(Path file, int shard, int shards) throws IOException {
+        if (shard < 0 || shard >= shards) {
+            throw new IllegalArgumentException("Invalid shard " + shard + " of " + shards);
+        }
+        return open(file, shard, shards, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Opens a binary dataset file with a max segment size.
+     * 
+     * @param file The file
+     * @param max_seg Max number of bytes in one segment
+     * @return The dataset
+     * @throws IOException If the file can't be read or is not a dataset file
+     */
+    static MappedDataset open(Path file, int max_seg) throws IOException {
+        return open(file, 0, 1, max_seg);
+    }
+    
+    /**
+     * Opens one shard of a binary dataset file with a max segment size.
+     * 
+     * @param file The file
+     * @param shard Index of the shard
+     * @param shards Number of shards
+     * @param max_seg Max number of bytes in one segment
+     * @return The instances of the shard
+     * @throws IOException If the file can't be read or is not a dataset file
+     */
+    private static MappedDataset open(Path file, int shard, int shards, int max_seg) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            Header h = read_header(ch, file);
+            int type = h.type;
+            long n = h.n;
+            int d = h.d;
+            long row_bytes = h.row_bytes;
+            if (n > Integer.MAX_VALUE) {
+                throw new IOException("Unsupported size " + n + "x" + d + " in " + file);
+            }
+            
+            // Instances of the shard
+            long lo = n * shard / shards;
+            long hi = n * (shard + 1) / shards;
+            long start = HEADER + lo * row_bytes;
+            n = hi - lo;
+            
+            // Map the values as a chain of segments holding whole instances
+            int seg_rows = (int)Math.max(1, Math.min(n, max_seg / row_bytes));
+            int no_segs = (int)((n + seg_rows - 1) / seg_rows);
+            MappedDataset data = new MappedDataset((int)n, d, type, seg_rows);
+            if (type == FLOAT64) {
+                data.dsegs = new ByteBuffer[no_segs];
+            }
+            else {
+                data.fsegs = new FloatBuffer[no_segs];
+            }
+            for (int s = 0; s < no_segs; s++) {
+                long rows = Math.min(seg_rows, n - (long)s * seg_rows);
+                long pos = start + (long)s * seg_rows * row_bytes;
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, rows * row_bytes);
+                buf.order(ByteOrder.LITTLE_ENDIAN);
+                if (type == FLOAT64) {
+                    data.dsegs[s] = buf;
+                }
+                else {
+                    data.fsegs[s] = buf.asFloatBuffer();
+                }
+            }
+            // The mappings stay valid after the channel is closed
+            return data;
+        }
+    }
+    
+    /**
+     * Header of a binary dataset file.
+     */
+    static class Header {
+        // Value type
+        int type;
+        // Number of instances
+        long n;
+        // Number of attributes
+        int d;
+        // Number of bytes of one instance
+        long row_bytes;
+    }
+    
+    /**
+     * Reads and checks the header of a binary dataset file. The channel is
+     * left positioned at the first value.
+     * 
+     * @param ch The channel
+     * @param file The file, for error messages
+     * @return The header
+     * @throws IOException If the file can't be read, is not a dataset file or is truncated
+     */
+    static Header read_header(FileChannel ch, Path file) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        ch.position(0);
+        while (b.hasRemaining()) {
+            if (ch.read(b) < 0) {
+                throw new IOException("Truncated header in " + file);
+            }
+        }
+        b.flip();
+        if (b.getInt() != MAGIC) {
+            throw new IOException("Not a dataset file: " + file);
+        }
+        Header h = new Header();
+        h.type = b.getInt();
+        h.n = b.getLong();
+        h.d = b.getInt();
+        if (h.type != FLOAT32 && h.type != FLOAT64) {
+            throw new IOException("Unknown value type " + h.type + " in " + file);
+        }
+        if (h.n < 0 || h.d <= 0) {
+            throw new IOException("Unsupported size " + h.n + "x" + h.d + " in " + file);
+        }
+        
+        h.row_bytes = (long)h.d * (h.type == FLOAT32 ? 4 : 8);
+        if (ch.size() < HEADER + h.n * h.row_bytes) {
+            throw new IOException("Truncated data in " + file);
+        }
+        return h;
+    }
+    
+    /**
+     * Writes a dataset to a binary dataset file.
+     * 
+     * @param file The file
+     * @param data The dataset
+     * @param type Value type
+     * @throws IOException If the file can't be written
+     */
+    public static void write(Path file, Dataset data, int type) throws IOException {
+        int n = data.size();
+        int d = data.dimensions();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocate(Math.max(HEADER, 1 << 16)).order(ByteOrder.LITTLE_ENDIAN);
+            buf.putInt(MAGIC).putInt(type).putLong(n).putInt(d).putInt(0);
+            
+            int size = type == FLOAT32 ? 4 : 8;
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < d; j++) {
+                    if (buf.remaining() < size) {
+                        flush(ch, buf);
+                    }
+                    if (type == FLOAT32) {
+                        buf.putFloat((float)data.get(i, j));
+                    }
+                    else {
+                        buf.putDouble(data.get(i, j));
+                    }
+                }
+            }
+            flush(ch, buf);
+        }
+    }
+    
+    /**
+     * Writes the contents of a buffer to a channel and clears the buffer.
+     * 
+     * @param ch The channel
+     * @param buf The buffer
+     * @throws IOException If the buffer can't be written
+     */
+    private static void flush(FileChannel ch, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            ch.write(buf);
+        }
+        buf.clear();
+    }
+    
+    @Override
+    public double get(int i, int j) {
+        int p = (i % seg_rows) * d + j;
+        if (dsegs != null) {
+            return dsegs[i / seg_rows].getDouble(p * 8);
+        }
+        return fsegs[i / seg_rows].get(p);
+    }
+    
+    @Override
+    public double sq_euclidean(int i, double[] c, int off) {
+        int p = (i % seg_rows) * d;
+        if (dsegs != null) {
+            return DistanceKernel.KERNEL.sq_euclidean(dsegs[i / seg_rows], p * 8, c, off, d);
+        }
+        FloatBuffer seg = fsegs[i / seg_rows];
+        double sum = 0;
+        for (int j = 0; j < d; j++) {
+            double diff = seg.get(p + j) - c[off + j];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+    
+    @Override
+    public void sq_euclidean_all(int i, double[] c, int k, double[] out) {
+        if (dsegs != null) {
+            DistanceKernel.KERNEL.sq_euclidean_all(dsegs[i / seg_rows], (i % seg_rows) * d * 8, c, k, d, out);
+        }
+        else {
+            super.sq_euclidean_all(i, c, k, out);
+        }
+    }
+    
+    /**
+     * Returns an off-heap copy of the dataset with each instance scaled to
+     * unit length, since the mapped file is read-only.
+     * 
+     * @return The normalized dataset
+     */
+    @Override
+    public Dataset normalized() {
+        return OffHeapDataset.normalized_of(this);
+    }
+    
+    @Override
+    public void add_to(int i, double[] sum, int off) {
+        int p = (i % seg_rows) * d;
+        if (dsegs != null) {
+            ByteBuffer seg = dsegs[i / seg_rows];
+            for (int j = 0; j < d; j++) {
+                sum[off + j] += seg.getDouble((p + j) * 8);
+            }
+        }
+        else {
+            FloatBuffer seg = fsegs[i / seg_rows];
+            for (int j = 0; j < d; j++) {
+                sum[off + j] += seg.get(p + j);
+            }
+        }
+    }
+}
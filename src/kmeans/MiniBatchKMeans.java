@@ -0,0 +1,172 @@
+package kmeans;
+
+import java.util.*;
+
+/**
+ * Mini-batch k-means (Sculley, 2010) for datasets that don't fit in memory or
+ * never end. Instead of sweeping the whole dataset each iteration, centroids are
+ * updated from one batch at a time. Each centroid has its own learning rate,
+ * 1 / (number of instances it has been assigned so far), so it moves less and
+ * less as it has seen more data. Only the current batch and the centroids are
+ * held in memory.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class MiniBatchKMeans 
+{
+    // Number of clusters
+    int k;
+    // Randomizer
+    Random rnd;
+    // Strategy for placing the initial centroids
+    Seeding seeding = new KMeansPlusPlus();
+    // Strategy for assigning a batch
+    Assigner assigner = new LloydAssigner();
+    // Centroids, one row of attributes per cluster (null until the first batch)
+    double[] centroids;
+    // Number of instances assigned to each cluster so far
+    long[] counts;
+    // Number of batches processed
+    int batches;
+    // Stop fitting when no centroid moves longer than this in a batch (0 to disable)
+    double epsilon = 0;
+    
+    /**
+     * Creates a new mini-batch k-means.
+     * 
+     * @param k Number of clusters
+     * @param rnd Randomizer used for seeding
+     */
+    public MiniBatchKMeans(int k, Random rnd) {
+        this.k = k;
+        this.rnd = rnd;
+        counts = new long[k];
+    }
+    
+    /**
+     * Sets the strategy for placing the initial centroids. The centroids are
+     * seeded from the first batch.
+     * 
+     * @param seeding The seeding strategy
+     */
+    public void set_seeding(Seeding seeding) {
+        this.seeding = seeding;
+    }
+    
+    /**
+     * Sets the tolerance for stopping fit before the source is exhausted.
+     * 
+     * @param epsilon Stop when no centroid moves longer than this in a batch (0 to disable)
+     */
+    public void set_tolerance(double epsilon) {
+        this.epsilon = epsilon;
+    }
+    
+    /**
+     * Updates the centroids with a new batch of instances. Can be called any
+     * number of times as new data arrives.
+     * 
+     * @param batch The batch
+     * @return Longest distance any centroid moved
+     * @throws IllegalArgumentException If the batch has another number of attributes than the centroids
+     */
+    public double partial_fit(Dataset batch) {
+        int d = batch.dimensions();
+        if (centroids != null && centroids.length != k * d) {
+            throw new IllegalArgumentException("Batch has " + d + " attributes, but the centroids have " + centroids.length / k);
+        }
+        if (centroids == null) {
+            if (batch.size() < k) {
+                throw new IllegalArgumentException("First batch must have at least " + k + " instances");
+            }
+            centroids = seeding.seed(batch, k, rnd);
+        }
+        
+        // Assign the batch to the current centroids
+        int[] labels = new int[batch.size()];
+        Arrays.fill(labels, -1);
+        ClusterSums sums = new ClusterSums(k, d);
+        assigner.init(batch, k);
+        assigner.prepare(centroids);
+        assigner.assign_range(0, batch.size(), centroids, labels, sums);
+        
+        // Move each centroid towards the mean of its instances in the batch
+        double shift = 0;
+        for (int c = 0; c < k; c++) {
+            if (sums.count[c] == 0) continue;
+            
+            counts[c] += sums.count[c];
+            double eta = 1.0 / counts[c];
+            double m = 0;
+            for (int j = 0; j < d; j++) {
+                int o = c * d + j;
+                // Same as moving the centroid towards each instance in turn with rate 1 / count
+                double step = eta * (sums.sum[o] - sums.count[c] * centroids[o]);
+                centroids[o] += step;
+                m += step * step;
+            }
+            shift = Math.max(shift, Math.sqrt(m));
+        }
+        
+        batches++;
+        return shift;
+    }
+    
+    /**
+     * Fits the centroids from a source of batches.
+     * 
+     * @param src The source
+     * @param batch_size Number of instances in each batch
+     * @param max_batches Max number of batches to read
+     * @return Centroids and number of batches read (no labels, since the instances are not kept)
+     */
+    public KMeansResult fit(BatchSource src, int batch_size, int max_batches) {
+        int start = batches;
+        while (batches - start < max_batches) {
+            Dataset batch = src.next_batch(batch_size);
+            if (batch == null) break;
+            
+            double shift = partial_fit(batch);
+            if (shift < epsilon) break;
+        }
+        
+        return new KMeansResult(centroids(), null, batches - start);
+    }
+    
+    /**
+     * Returns a copy of the current centroids.
+     * 
+     * @return Centroids, one row per cluster
+     */
+    public double[][] centroids() {
+        if (centroids == null) {
+            return null;
+        }
+        int d = centroids.length / k;
+        double[][] res = new double[k][];
+        for (int c = 0; c < k; c++) {
+            res[c] = Arrays.copyOfRange(centroids, c * d, (c + 1) * d);
+        }
+        return res;
+    }
+    
+    /**
+     * Assigns instances to the closest of the current centroids.
+     * 
+     * @param data The instances
+     * @return Cluster index for each instance
+     * @throws IllegalStateException If no batch has been fitted yet
+     */
+    public int[] predict(Dataset data) {
+        if (centroids == null) {
+            throw new IllegalStateException("No centroids yet, call partial_fit first");
+        }
+        int[] labels = new int[data.size()];
+        Arrays.fill(labels, -1);
+        LloydAssigner a = new LloydAssigner();
+        a.init(data, k);
+        a.prepare(centroids);
+        a.assign_range(0, data.size(), centroids, labels, new ClusterSums(k, data.dimensions()));
+        return labels;
+    }
+}
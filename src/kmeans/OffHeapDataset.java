@@ -0,0 +1,220 @@
+package kmeans;
+
+import java.io.Closeable;
+import java.lang.reflect.*;
+import java.nio.*;
+import java.util.Arrays;
+
+/**
+ * Dataset stored off-heap in direct byte buffers, so the values are never
+ * scanned by the garbage collector and the heap only holds the centroids and
+ * labels. A single buffer is limited to 2 GB, so the values are stored as a
+ * chain of segments that each hold a whole number of instances, as in
+ * MappedDataset. The total number of values can therefore exceed 2^31, as
+ * long as the number of instances fits in an int.
+ * 
+ * Distances are calculated by the distance kernel straight from the buffers.
+ * 
+ * Direct buffers don't count against the heap, but against a separate limit
+ * set with -XX:MaxDirectMemorySize, which defaults to the max heap size
+ * (-Xmx). A dataset larger than the heap therefore needs both a larger direct
+ * memory limit and a heap small enough to leave room for it. The memory is
+ * released by close(), or when the dataset is garbage collected.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class OffHeapDataset extends Dataset implements Closeable
+{
+    // Number of instances in each segment
+    int seg_rows;
+    // Segments with the values of whole instances, row-major
+    ByteBuffer[] segs;
+    
+    /**
+     * Creates a new dataset with all values zero.
+     * 
+     * @param n Number of instances
+     * @param d Number of attributes
+     */
+    public OffHeapDataset(int n, int d) {
+        this(n, d, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Creates a new dataset with all values zero and a max segment size.
+     * 
+     * @param n Number of instances
+     * @param d Number of attributes
+     * @param max_seg Max number of bytes in one segment
+     */
+    OffHeapDataset(int n, int d, int max_seg) {
+        super(n, d);
+        long row_bytes = (long)d * 8;
+        if (row_bytes > max_seg) {
+            throw new IllegalArgumentException("An instance with " + d + " attributes doesn't fit in a segment");
+        }
+        seg_rows = (int)Math.max(1, Math.min(n, max_seg / row_bytes));
+        int no_segs = (n + seg_rows - 1) / seg_rows;
+        segs = new ByteBuffer[no_segs];
+        try {
+            for (int s = 0; s < no_segs; s++) {
+                int rows = Math.min(seg_rows, n - s * seg_rows);
+                segs[s] = ByteBuffer.allocateDirect((int)(rows * row_bytes)).order(ByteOrder.nativeOrder());
+            }
+        }
+        catch (OutOfMemoryError ex) {
+            close();
+            throw new OutOfMemoryError("Not enough direct memory for " + n + "x" + d + " values, raise -XX:MaxDirectMemorySize");
+        }
+    }
+    
+    /**
+     * Releases the off-heap memory right away instead of when the dataset is
+     * garbage collected. The dataset can't be used after it is closed.
+     */
+    @Override
+    public void close() {
+        if (segs == null) return;
+        
+        // Direct buffers can only be freed early through the unsupported
+        // Unsafe.invokeCleaner, otherwise they are freed when collected
+        Method clean = null;
+        Object unsafe = null;
+        try {
+            Class<?> c = Class.forName("sun.misc.Unsafe");
+            Field f = c.getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            unsafe = f.get(null);
+            clean = c.getMethod("invokeCleaner", ByteBuffer.class);
+        }
+        catch (ReflectiveOperationException | RuntimeException ex) {
+            // Not available
+        }
+        if (clean != null) {
+            for (ByteBuffer seg : segs) {
+                if (seg == null) continue;
+                try {
+                    clean.invoke(unsafe, seg);
+                }
+                catch (ReflectiveOperationException ex) {
+                    // Freed when collected
+                }
+            }
+        }
+        segs = null;
+    }
+    
+    /**
+     * Creates an off-heap copy of a dataset.
+     * 
+     * @param src The dataset
+     * @return The off-heap dataset
+     */
+    public static OffHeapDataset of(Dataset src) {
+        OffHeapDataset res = new OffHeapDataset(src.size(), src.dimensions());
+        for (int i = 0; i < res.n; i++) {
+            for (int j = 0; j < res.d; j++) {
+                res.set(i, j, src.get(i, j));
+            }
+        }
+        return res;
+    }
+    
+    /**
+     * Creates an off-heap copy of a dataset with each instance scaled to unit
+     * length, without copying the dataset to the heap.
+     * 
+     * @param src The dataset
+     * @return The normalized off-heap dataset
+     */
+    public static OffHeapDataset normalized_of(Dataset src) {
+        OffHeapDataset res = new OffHeapDataset(src.size(), src.dimensions());
+        double[] row = new double[res.d];
+        for (int i = 0; i < res.n; i++) {
+            Arrays.fill(row, 0);
+            src.add_to(i, row, 0);
+            normalize(row, 0, res.d);
+            res.set_row(i, row);
+        }
+        return res;
+    }
+    
+    /**
+     * Byte offset of an attribute within its segment.
+     * 
+     * @param i Index of the instance
+     * @param j Index of the attribute
+     * @return Byte offset
+     */
+    private int pos(int i, int j) {
+        return ((i % seg_rows) * d + j) * 8;
+    }
+    
+    @Override
+    public Dataset normalized() {
+        return normalized_of(this);
+    }
+    
+    @Override
+    public double get(int i, int j) {
+        return segs[i / seg_rows].getDouble(pos(i, j));
+    }
+    
+    /**
+     * Sets the value of an attribute.
+     * 
+     * @param i Index of the instance
+     * @param j Index of the attribute
+     * @param val Attribute value
+     */
+    public void set(int i, int j, double val) {
+        segs[i / seg_rows].putDouble(pos(i, j), val);
+    }
+    
+    /**
+     * Sets all attributes of an instance.
+     * 
+     * @param i Index of the instance
+     * @param vals Attribute values
+     */
+    public void set_row(int i, double[] vals) {
+        ByteBuffer seg = segs[i / seg_rows];
+        int p = pos(i, 0);
+        for (int j = 0; j < d; j++) {
+            seg.putDouble(p + j * 8, vals[j]);
+        }
+    }
+    
+    @Override
+    public double sq_euclidean(int i, double[] c, int off) {
+        return DistanceKernel.KERNEL.sq_euclidean(segs[i / seg_rows], pos(i, 0), c, off, d);
+    }
+    
+    @Override
+    public void sq_euclidean_all(int i, double[] c, int k, double[] out) {
+        DistanceKernel.KERNEL.sq_euclidean_all(segs[i / seg_rows], pos(i, 0), c, k, d, out);
+    }
+    
+    @Override
+    public double dot(int i, double[] c, int off) {
+        return DistanceKernel.KERNEL.dot(segs[i / seg_rows], pos(i, 0), c, off, d);
+    }
+    
+    @Override
+    public void add_to(int i, double[] sum, int off) {
+        ByteBuffer seg = segs[i / seg_rows];
+        int p = pos(i, 0);
+        for (int j = 0; j < d; j++) {
+            sum[off + j] += seg.getDouble(p + j * 8);
+        }
+    }
+    
+    @Override
+    public void sub_from(int i, double[] sum, int off) {
+        ByteBuffer seg = segs[i / seg_rows];
+        int p = pos(i, 0);
+        for (int j = 0; j < d; j++) {
+            sum[off + j] -= seg.getDouble(p + j * 8);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package kmeans;
+
+import java.util.Arrays;
+
+/**
+ * Dataset where each value is quantized to one byte, an eighth of the bytes
+ * of a DenseDataset. Each attribute has its own scale and offset, so its
+ * range from min to max is split into 256 steps: the value of code q is
+ * offset + scale * q, with q from -128 to 127.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class QuantizedDataset extends ReducedDataset 
+{
+    // Quantized values of all instances, row-major
+    byte[] codes;
+    // Step between codes for each attribute
+    double[] scale;
+    // Value of code 0 for each attribute
+    double[] offset;
+    
+    /**
+     * Creates a new dataset from quantized values.
+     * 
+     * @param codes Quantized values of all instances, row-major
+     * @param scale Step between codes for each attribute
+     * @param offset Value of code 0 for each attribute
+     */
+    public QuantizedDataset(byte[] codes, double[] scale, double[] offset) {
+        super(codes.length / scale.length, scale.length);
+        if (offset.length != d) {
+            throw new IllegalArgumentException("Scale and offset must have one value per attribute");
+        }
+        this.codes = codes;
+        this.scale = scale;
+        this.offset = offset;
+    }
+    
+    /**
+     * Creates a quantized copy of a dataset. The scale and offset of each
+     * attribute are set from its min and max value.
+     * 
+     * @param src The dataset
+     * @return The quantized dataset
+     * @throws IllegalArgumentException If there are too many values for one array
+     */
+    public static QuantizedDataset of(Dataset src) {
+        int n = src.size();
+        int d = src.dimensions();
+        int size = values(n, d);
+        
+        // Range of each attribute
+        double[] min = new double[d];
+        double[] max = new double[d];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < d; j++) {
+                double v = src.get(i, j);
+                min[j] = Math.min(min[j], v);
+                max[j] = Math.max(max[j], v);
+            }
+        }
+        
+        double[] scale = new double[d];
+        double[] offset = new double[d];
+        for (int j = 0; j < d; j++) {
+            if (max[j] < min[j]) continue;
+            scale[j] = (max[j] - min[j]) / 255;
+            offset[j] = min[j] + 128 * scale[j];
+        }
+        
+        QuantizedDataset res = new QuantizedDataset(new byte[size], scale, offset);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < d; j++) {
+                int q = scale[j] > 0 ? (int)Math.round((src.get(i, j) - min[j]) / scale[j]) - 128 : 0;
+                res.codes[i * d + j] = (byte)Math.max(-128, Math.min(127, q));
+            }
+            res.track_error(src, i);
+        }
+        return res;
+    }
+    
+    @Override
+    public double get(int i, int j) {
+        return offset[j] + scale[j] * codes[i * d + j];
+    }
+    
+    @Override
+    public double sq_euclidean(int i, double[] c, int off) {
+        return DistanceKernel.KERNEL.sq_euclidean(codes, i * d, scale, offset, c, off, d);
+    }
+    
+    @Override
+    public void sq_euclidean_all(int i, double[] c, int k, double[] out) {
+        DistanceKernel.KERNEL.sq_euclidean_all(codes, i * d, scale, offset, c, k, d, out);
+    }
+    
+    @Override
+    public double dot(int i, double[] c, int off) {
+        return DistanceKernel.KERNEL.dot(codes, i * d, scale, offset, c, off, d);
+    }
+    
+    @Override
+    public void add_to(int i, double[] sum, int off) {
+        int p = i * d;
+        for (int j = 0; j < d; j++) {
+            sum[off + j] += offset[j] + scale[j] * codes[p + j];
+        }
+    }
+}
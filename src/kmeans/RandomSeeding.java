@@ -0,0 +1,83 @@
+package kmeans;
+
+import java.util.*;
+
+/**
+ * Places each centroid uniformly at random within a bounding box. This is the
+ * placement used by the visualization, but it often gives empty or badly placed
+ * clusters on real data.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class RandomSeeding implements Seeding 
+{
+    // Max counts (null to use the bounds of the data)
+    int[] max_counts;
+    // Min counts (null to use the bounds of the data)
+    int[] min_counts;
+    
+    /**
+     * Random centroids within the bounds of the data.
+     */
+    public RandomSeeding() {
+        
+    }
+    
+    /**
+     * Random centroids within the specified bounds.
+     * 
+     * @param min_counts Min value for each attribute
+     * @param max_counts Max value for each attribute
+     */
+    public RandomSeeding(int[] min_counts, int[] max_counts) {
+        this.min_counts = min_counts;
+        this.max_counts = max_counts;
+    }
+    
+    @Override
+    public double[] seed(Dataset data, int k, Random rnd) {
+        int[] min = min_counts;
+        int[] max = max_counts;
+        if (min == null || max == null) {
+            int d = data.dimensions();
+            min = new int[d];
+            max = new int[d];
+            data_bounds(data, min, max);
+        }
+        
+        int d = min.length;
+        double[] centroids = new double[k * d];
+        for (int c = 0; c < k; c++) {
+            // Iterate over all attributes
+            for (int i = 0; i < d; i++) {
+                // Generate random value
+                int range = Math.max(max[i] - min[i], 1);
+                int rnd_cnt = rnd.nextInt(range) + min[i];
+                // Update attribute
+                centroids[c * d + i] = rnd_cnt;
+            }
+        }
+        return centroids;
+    }
+    
+    /**
+     * Finds the bounds of the data.
+     * 
+     * @param data The dataset
+     * @param min Min value for each attribute
+     * @param max Max value for each attribute
+     */
+    private void data_bounds(Dataset data, int[] min, int[] max) {
+        int d = data.dimensions();
+        Arrays.fill(min, Integer.MAX_VALUE);
+        Arrays.fill(max, Integer.MIN_VALUE);
+        
+        for (int i = 0; i < data.size(); i++) {
+            for (int j = 0; j < d; j++) {
+                double v = data.get(i, j);
+                min[j] = Math.min(min[j], (int)Math.floor(v));
+                max[j] = Math.max(max[j], (int)Math.ceil(v));
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package kmeans;
+
+/**
+ * Dataset that stores its values with reduced precision to lower the number
+ * of bytes streamed per iteration. Distances are calculated from the stored
+ * values and accumulated in double, and centroids stay in double. The largest
+ * distance between an instance and its exact values is recorded when the
+ * dataset is created, so assignments that can't change because of the
+ * rounding are known. If the exact dataset is kept, instances closer than
+ * that to a decision boundary are rechecked against the exact values.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public abstract class ReducedDataset extends Dataset 
+{
+    // Largest Euclidean distance between an instance and its exact values
+    double max_error;
+    // Dataset with the exact values (null to never recheck)
+    Dataset exact;
+    
+    /**
+     * Creates a new dataset.
+     * 
+     * @param n Number of instances
+     * @param d Number of attributes
+     */
+    public ReducedDataset(int n, int d) {
+        super(n, d);
+    }
+    
+    /**
+     * Returns the largest Euclidean distance between an instance and its exact
+     * values.
+     * 
+     * @return Largest rounding error
+     */
+    public double max_error() {
+        return max_error;
+    }
+    
+    /**
+     * Returns the dataset with the exact values.
+     * 
+     * @return The exact dataset, or null if assignments are never rechecked
+     */
+    public Dataset exact() {
+        return exact;
+    }
+    
+    /**
+     * Sets the dataset with the exact values, used to recheck instances close
+     * to a decision boundary. It can be a memory-mapped file, since only a
+     * few instances per iteration are read from it.
+     * 
+     * @param exact The exact dataset (null to never recheck)
+     */
+    public void set_exact(Dataset exact) {
+        if (exact != null && (exact.size() != n || exact.dimensions() != d)) {
+            throw new IllegalArgumentException("Exact dataset is " + exact.size() + "x" + exact.dimensions() + ", not " + n + "x" + d);
+        }
+        this.exact = exact;
+    }
+    
+    /**
+     * Checks if assignments on a dataset are rechecked against exact values,
+     * which only the plain assignment does.
+     * 
+     * @param data The dataset
+     * @return True if the dataset is reduced and keeps its exact values
+     */
+    static boolean rechecked(Dataset data) {
+        return data instanceof ReducedDataset && ((ReducedDataset)data).exact() != null;
+    }
+    
+    /**
+     * Records the rounding error of an instance.
+     * 
+     * @param src The exact dataset
+     * @param i Index of the instance
+     */
+    void track_error(Dataset src, int i) {
+        double sq = 0;
+        for (int j = 0; j < d; j++) {
+            double diff = get(i, j) - src.get(i, j);
+            sq += diff * diff;
+        }
+        max_error = Math.max(max_error, Math.sqrt(sq));
+    }
+}
@@ -0,0 +1,653 @@
+package kmeans;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * Render GUI panel for the k-means visualization. The clustering thread
+ * publishes immutable snapshots of each state (centroids, labels and
+ * centroid history) and the event dispatch thread always renders the latest
+ * one. Snapshots are handed over through atomic references, so the clustering
+ * thread never waits for the GUI, and snapshots that are published faster
+ * than they are rendered are skipped instead of queued. The buffers of
+ * rendered and skipped snapshots are reused.
+ * 
+ * The instances and the lines to their centroids are rendered to an offscreen
+ * image that is only rebuilt when the assignments change, so frames where
+ * only the centroids move just copy the image and draw the centroids on top.
+ * A timer repaints the panel at most at the target frame rate.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class RenderPanel extends JPanel {
+    // Max number of instances to draw lines to the centroids for. The lines
+    // depend on the centroid positions, so they make the point layer follow
+    // the centroids.
+    static final int MAX_LINES = 5000;
+    // Max number of instances to draw as circles. Larger datasets are drawn
+    // as a density grid.
+    static final int MAX_POINTS = 200000;
+    // Color of the lines between instances and centroids
+    static final Color LINE_COLOR = new Color(230, 230, 230);
+    // Size of the instance circles
+    static final int POINT_SIZE = 5;
+    
+    // Centroids to show, one row of attributes per cluster
+    double[] centroids;
+    // Cluster index for each instance
+    int[] labels;
+    // The instances
+    Dataset data;
+    // Colors for the clusters
+    Palette palette;
+    // History of centroid positions for each cluster
+    ArrayList<ArrayList<Coord>> hist;
+    // Size of render area
+    public static int w = 680;
+    public static int h = 580;
+    // Render state
+    int state = 0;
+    // Size of centroid circle
+    volatile int cent_size = 9;
+    // Version of the instance layer, changed when it must be rebuilt
+    int version = 0;
+    // True if density rendering is used for all datasets
+    boolean force_density = false;
+    // True if the current dataset is drawn as a density grid
+    boolean density = false;
+    // Density grid for large datasets
+    DensityGrid grid;
+    // Instances that changed cluster in the last iteration (null if not known)
+    int[] moved;
+    int no_moved;
+    
+    // Latest published snapshot that is not rendered yet
+    final AtomicReference<Snapshot> pending = new AtomicReference<>();
+    // Snapshot that can be reused by the next publish
+    final AtomicReference<Snapshot> spare = new AtomicReference<>();
+    // Snapshot currently rendered, only used by the event dispatch thread
+    Snapshot front;
+    // True if the panel must be repainted
+    volatile boolean dirty = true;
+    // Timer repainting the panel when it is dirty
+    javax.swing.Timer timer;
+    
+    // Offscreen image with the instances (and lines for small datasets)
+    BufferedImage layer;
+    // Pixels of the offscreen image
+    int[] pixels;
+    // Snapshot the offscreen image was rendered for
+    Snapshot layer_snapshot;
+    // Version the offscreen image was rendered for
+    int layer_version = -1;
+    
+    /**
+     * Class to hold (x,y) coordinates.
+     */
+    private static class Coord {
+        int x;
+        int y;
+        int w;
+        
+        /**
+         * New coordinate.
+         * 
+         * @param x X-coord
+         * @param y Y-coord
+         */
+        public Coord(int x, int y) {
+            this.x = x;
+            this.y = y;
+            this.w = 0;
+        }
+        
+        /**
+         * New coordinate from instance or centroid position.
+         * 
+         * @param px X-position
+         * @param py Y-position
+         * @param w Width of rendered circle
+         */
+        public Coord(double px, double py, int w) {  
+            double nx = px - w/2;
+            double ny = py - w/2;
+            this.x = (int)Math.round(nx);
+            this.y = (int)Math.round(ny);
+            this.w = w;
+        }
+    }
+    
+    /**
+     * Colors for a number of clusters.
+     */
+    private static class Palette {
+        // Color for each cluster
+        Color[] colors;
+        // Color of the instances in each cluster
+        int[] inst_colors;
+        // Fading colors for the centroid history of each cluster
+        Color[][] fade_colors;
+        
+        /**
+         * New palette. Instance and history colors are calculated once.
+         * 
+         * @param colors Color for each cluster
+         */
+        public Palette(Color[] colors) {
+            this.colors = colors;
+            inst_colors = new int[colors.length];
+            fade_colors = new Color[colors.length][];
+            for (int c = 0; c < colors.length; c++) {
+                inst_colors[c] = get_color(colors[c], -60).getRGB();
+                fade_colors[c] = new Color[32];
+                for (int i = 0; i < fade_colors[c].length; i++) {
+                    fade_colors[c][i] = get_color(colors[c], 8 * (i + 1));
+                }
+            }
+        }
+    }
+    
+    /**
+     * State to render. A snapshot is never changed after it is published.
+     */
+    private static class Snapshot {
+        // Render state
+        int state;
+        // The instances
+        Dataset data;
+        // Centroids to show, or null if not placed yet
+        double[] centroids;
+        // Cluster index for each instance, or null if not assigned yet
+        int[] labels;
+        // Rendered density grid, or null if not drawn as a density grid
+        int[] pixels;
+        // Density grid the centroids are scaled to, or null if not drawn as a density grid
+        DensityGrid grid;
+        // History of centroid positions for each cluster
+        Coord[][] hist;
+        // Version of the instance layer
+        int version;
+        // Colors for the clusters
+        Palette palette;
+    }
+    
+    /**
+     * New render panel.
+     */
+    public RenderPanel() {
+        // Define render colors
+        palette = new Palette(palette(4));
+        
+        // Centroid history
+        hist = new ArrayList<>();
+        
+        // Set state
+        state = 0;
+        
+        // Offscreen image
+        layer = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        pixels = ((DataBufferInt)layer.getRaster().getDataBuffer()).getData();
+        
+        // Set panel size
+        this.setPreferredSize(new Dimension(w, h));
+        
+        // Repaint at most 60 frames per second
+        timer = new javax.swing.Timer(1000 / 60, e -> {
+            if (dirty) {
+                dirty = false;
+                repaint();
+            }
+        });
+        timer.start();
+    }
+    
+    /**
+     * Generates a color for each cluster. The first four colors are fixed, and
+     * the hues of the following colors are spread by the golden angle so that
+     * neighbouring clusters get clearly different colors for any k.
+     * 
+     * @param k Number of clusters
+     * @return Color for each cluster
+     */
+    public static Color[] palette(int k) {
+        Color[] colors = new Color[Math.max(k, 4)];
+        colors[0] = new Color(58, 44, 247); //Blue
+        colors[1] = new Color(196, 55, 27); //Red
+        colors[2] = new Color(35, 196, 27); //Green
+        colors[3] = new Color(219, 158, 26); //Orange
+        for (int c = 4; c < colors.length; c++) {
+            float hue = (float)((c * 0.6180339887) % 1.0);
+            float bri = c % 2 == 0 ? 0.85f : 0.65f;
+            colors[c] = Color.getHSBColor(hue, 0.8f, bri);
+        }
+        return colors;
+    }
+    
+    /**
+     * Makes sure the palette has a color for each cluster.
+     * 
+     * @param k Number of clusters
+     */
+    private void ensure_palette(int k) {
+        if (k <= palette.colors.length) return;
+        palette = new Palette(palette(k));
+        if (density) {
+            grid.set_colors(palette.colors);
+        }
+    }
+    
+    /**
+     * Sets the max number of frames per second.
+     * 
+     * @param fps Frames per second
+     */
+    public void set_fps(int fps) {
+        timer.setDelay(1000 / Math.max(fps, 1));
+    }
+    
+    /**
+     * Sets if all datasets are drawn as a density grid instead of as circles.
+     * Datasets with more than MAX_POINTS instances are always drawn as a
+     * density grid. Takes effect from the next dataset.
+     * 
+     * @param force True to use density rendering for all datasets
+     */
+    public void set_density(boolean force) {
+        force_density = force;
+    }
+    
+    /**
+     * Clears the rendering.
+     */
+    public void clear() {
+        hist = new ArrayList<>();
+        centroids = null;
+        labels = null;
+        data = null;
+        state = 0;
+        density = false;
+        version++;
+        
+        publish();
+    }
+    
+    /**
+     * Set GUI state to init.
+     * 
+     * @param data The instances to show
+     */
+    public void init(Dataset data) {
+        this.data = data;
+        state = 1;
+        version++;
+        
+        // Bin large datasets into the density grid
+        density = force_density || data.size() > MAX_POINTS;
+        if (density) {
+            if (grid == null) {
+                grid = new DensityGrid(w, h, palette.colors);
+            }
+            grid.init(data);
+        }
+        
+        publish();
+    }
+    
+    /**
+     * Set GUI state to random centroid placement.
+     * 
+     * @param c The random centroids
+     */
+    public void place_centroids(double[] c) {
+        centroids = c.clone();
+        state = 2;
+        ensure_palette(no_clusters());
+        
+        publish();
+    }
+    
+    /**
+     * Sets the instances that changed cluster in the next iteration, so the
+     * density grid only updates them.
+     * 
+     * @param m Indices of the instances that changed cluster
+     * @param count Number of instances in m
+     */
+    public void moved(int[] m, int count) {
+        moved = m;
+        no_moved = count;
+    }
+    
+    /**
+     * Updates the GUI after an iteration.
+     * 
+     * @param c New centroids to render
+     * @param l Cluster index for each instance
+     */
+    public void iterate(double[] c, int[] l) {
+        centroids = c.clone();
+        state = 3;
+        ensure_palette(no_clusters());
+        
+        // Rebuild the instances only if the assignments changed, or if the
+        // lines must follow the centroids. The density grid only updates the
+        // cells of instances that changed cluster.
+        if (density) {
+            grid.update(data, l, no_clusters(), moved, no_moved);
+            version++;
+        }
+        else if (labels == null || !Arrays.equals(l, labels) || lines()) {
+            labels = copy(l, labels);
+            version++;
+        }
+        
+        // Add centroids to history
+        for (int cnt = 0; cnt < no_clusters(); cnt++) {
+            if (hist.size() <= cnt) {
+                hist.add(new ArrayList<>());
+            }
+            ArrayList<Coord> chist = hist.get(cnt);
+            Coord center = centroid_coord(centroids, data.dimensions(), cnt, 9, density ? grid : null);
+            if (add(chist, center)) {
+                chist.add(0, center);
+            }
+        }
+        moved = null;
+        
+        publish();
+    }
+    
+    /**
+     * Sets GUI state to done.
+     */
+    public void done() {
+        state = 4;
+        
+        publish();
+    }
+    
+    /**
+     * Animates centroid circle by changing size.
+     * 
+     * @param size Size of circle
+     */
+    public void anim_centroid(int size) {
+        this.cent_size = size;
+        dirty = true;
+    }
+    
+    /**
+     * Publishes a snapshot of the current state. If the previous snapshot is
+     * not rendered yet it is skipped and reused later.
+     */
+    private void publish() {
+        Snapshot s = spare.getAndSet(null);
+        if (s == null) {
+            s = new Snapshot();
+        }
+        
+        s.state = state;
+        s.data = data;
+        s.centroids = centroids;
+        s.version = version;
+        s.palette = palette;
+        if (density) {
+            s.pixels = copy(grid.pixels(), s.pixels);
+            s.grid = grid;
+            s.labels = null;
+        }
+        else {
+            s.labels = labels == null ? null : copy(labels, s.labels);
+            s.pixels = null;
+            s.grid = null;
+        }
+        s.hist = new Coord[hist.size()][];
+        for (int cnt = 0; cnt < hist.size(); cnt++) {
+            s.hist[cnt] = hist.get(cnt).toArray(new Coord[0]);
+        }
+        
+        Snapshot skipped = pending.getAndSet(s);
+        if (skipped != null) {
+            spare.compareAndSet(null, skipped);
+        }
+        dirty = true;
+    }
+    
+    /**
+     * Copies an array, reusing the destination array if it has the same size.
+     * 
+     * @param src Source array
+     * @param dst Destination array, or null
+     * @return The copy
+     */
+    private static int[] copy(int[] src, int[] dst) {
+        if (dst == null || dst.length != src.length) {
+            dst = new int[src.length];
+        }
+        System.arraycopy(src, 0, dst, 0, src.length);
+        return dst;
+    }
+    
+    @Override
+    public void paint(Graphics gn) {
+        Graphics2D g = (Graphics2D)gn;
+        
+        // Take the latest snapshot
+        Snapshot latest = pending.getAndSet(null);
+        if (latest != null) {
+            if (front != null) {
+                spare.compareAndSet(null, front);
+            }
+            front = latest;
+        }
+        Snapshot s = front;
+        
+        // Instances (and background)
+        if (s == null) {
+            Arrays.fill(pixels, 0xFFFFFFFF);
+        }
+        else if (s != layer_snapshot) {
+            if (s.pixels != null) {
+                System.arraycopy(s.pixels, 0, pixels, 0, pixels.length);
+            }
+            else if (s.version != layer_version) {
+                render_layer(s);
+            }
+            layer_snapshot = s;
+            layer_version = s.version;
+        }
+        g.drawImage(layer, 0, 0, null);
+        g.setColor(Color.white);
+        g.fillRect(w, 0, Math.max(0, this.getWidth() - w), this.getHeight());
+        g.fillRect(0, h, this.getWidth(), Math.max(0, this.getHeight() - h));
+        if (s == null || s.centroids == null) return;
+        
+        int d = s.data.dimensions();
+        int k = s.centroids.length / d;
+        int size = cent_size;
+        Color[] colors = s.palette.colors;
+        
+        // State 2: Show random clusters placement
+        if (s.state == 2) {
+            for (int cnt = 0; cnt < k; cnt++) {
+                // Show centroid
+                Coord center = centroid_coord(s.centroids, d, cnt, size, s.grid);
+                g.setColor(colors[cnt]);
+                g.fillOval(center.x, center.y, center.w, center.w);
+            }
+        }
+        
+        // Show iterations for state 3 and 4
+        if (s.state == 3 || s.state == 4) {
+            // Iterate over each cluster
+            for (int cnt = 0; cnt < k; cnt++) {
+                Color[] fade = s.palette.fade_colors[cnt];
+                // Render history of how the centroids move
+                if (cnt < s.hist.length) {
+                    Coord[] chist = s.hist[cnt];
+                    for (int i = 0; i < chist.length; i++) {
+                        // Fading color
+                        g.setColor(fade[Math.min(i, fade.length - 1)]);
+                        // Render history point
+                        Coord p = chist[i];
+                        g.fillOval(p.x, p.y, 7, 7);
+                    }
+                }
+                
+                // Render centroid
+                Coord center = centroid_coord(s.centroids, d, cnt, size, s.grid);
+                g.setColor(colors[cnt]);
+                g.fillOval(center.x, center.y, center.w, center.w);
+            }
+        }
+    }
+    
+    /**
+     * Checks if lines between instances and centroids are rendered.
+     * 
+     * @return True if lines are rendered
+     */
+    private boolean lines() {
+        return data != null && data.size() <= MAX_LINES;
+    }
+    
+    /**
+     * Renders the instances of a snapshot to the offscreen image.
+     * 
+     * @param s The snapshot
+     */
+    private void render_layer(Snapshot s) {
+        // Background
+        Arrays.fill(pixels, 0xFFFFFFFF);
+        if (s.data == null || s.state == 0) return;
+        
+        // Render lines between instances and centroids
+        Dataset data = s.data;
+        int[] l = s.state >= 3 ? s.labels : null;
+        if (l != null && data.size() <= MAX_LINES) {
+            Graphics2D g = layer.createGraphics();
+            g.setColor(LINE_COLOR);
+            int d = data.dimensions();
+            for (int i = 0; i < data.size(); i++) {
+                int off = l[i] * d;
+                g.drawLine((int)Math.round(s.centroids[off]), (int)Math.round(s.centroids[off + 1]), 
+                           (int)Math.round(data.get(i, 0)), (int)Math.round(data.get(i, 1)));
+            }
+            g.dispose();
+        }
+        
+        // Render all instances straight to the pixels
+        int[] inst_colors = s.palette.inst_colors;
+        int black = Color.black.getRGB();
+        for (int i = 0; i < data.size(); i++) {
+            int rgb = l != null ? inst_colors[l[i]] : black;
+            fill_circle((int)Math.round(data.get(i, 0)), (int)Math.round(data.get(i, 1)), rgb);
+        }
+    }
+    
+    /**
+     * Fills an instance circle in the offscreen image.
+     * 
+     * @param cx Center x-coord
+     * @param cy Center y-coord
+     * @param rgb Color
+     */
+    private void fill_circle(int cx, int cy, int rgb) {
+        int r = POINT_SIZE / 2;
+        for (int y = -r; y <= r; y++) {
+            int py = cy + y;
+            if (py < 0 || py >= h) continue;
+            for (int x = -r; x <= r; x++) {
+                int px = cx + x;
+                // Skip corners to get a round shape
+                if (px < 0 || px >= w || x * x + y * y > r * r + 1) continue;
+                pixels[py * w + px] = rgb;
+            }
+        }
+    }
+    
+    /**
+     * Returns the number of clusters to render.
+     * 
+     * @return Number of clusters
+     */
+    private int no_clusters() {
+        return centroids.length / data.dimensions();
+    }
+    
+    /**
+     * Returns the render coordinate of a centroid.
+     * 
+     * @param c The centroids
+     * @param d Number of attributes
+     * @param cnt Index of the cluster
+     * @param size Size of centroid circle
+     * @param grid Density grid to scale the centroid to, or null for raw attributes
+     * @return Centroid coordinate
+     */
+    private static Coord centroid_coord(double[] c, int d, int cnt, int size, DensityGrid grid) {
+        int off = cnt * d;
+        double x = c[off];
+        double y = d > 1 ? c[off + 1] : 0;
+        if (grid != null) {
+            x = grid.grid_x(x);
+            y = grid.grid_y(y);
+        }
+        return new Coord(x, y, size);
+    }
+    
+    /**
+     * Returns a darker or lighter color.
+     * 
+     * @param c Base color
+     * @param diff Difference (negative for darker, positive for lighter)
+     * @return New color
+     */
+    private static Color get_color(Color c, int diff) {
+        int cr = clamp(c.getRed() + diff, 0, 255);
+        int cg = clamp(c.getGreen() + diff, 0, 255);
+        int cb = clamp(c.getBlue() + diff, 0, 255);
+        return new Color(cr, cg, cb);
+    }
+    
+    /**
+     * Clamps an integer value between min and max.
+     * 
+     * @param v The value
+     * @param min Min
+     * @param max Max
+     * @return Clamped value
+     */
+    private static int clamp(int v, int min, int max) {
+        if (v < min) return min;
+        else if (v > max) return max;
+        else return v;
+    }
+    
+    /**
+     * Checks if a centroid coordinate shall be added to the cluster's history. We don't
+     * add if the coordinate only moved a short distance.
+     * 
+     * @param h Cluster's history
+     * @param center Current centroid coordinate
+     * @return True if add to history, false otherwise
+     */
+    private boolean add(ArrayList<Coord> h, Coord center)
+    {
+        // Always add the first coordinate
+        if (h.isEmpty()) return true;
+        // Get absolut difference from previous coordinate
+        Coord p0 = h.get(0);
+        int diff = Math.abs(p0.x - center.x) + Math.abs(p0.y - center.y);
+        // Check if difference is large enough
+        return diff > 4;
+    }
+}
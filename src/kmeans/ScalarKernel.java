@@ -0,0 +1,28 @@
+package kmeans;
+
+/**
+ * Plain Java distance kernel.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class ScalarKernel extends DistanceKernel 
+{
+    @Override
+    public double sq_euclidean(double[] a, int ao, double[] b, int bo, int d) {
+        double sum = 0;
+        for (int j = 0; j < d; j++) {
+            double diff = a[ao + j] - b[bo + j];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+    
+    @Override
+    public double dot(double[] a, int ao, double[] b, int bo, int d) {
+        double sum = 0;
+        for (int j = 0; j < d; j++) {
+            sum += a[ao + j] * b[bo + j];
+        }
+        return sum;
+    }
+}
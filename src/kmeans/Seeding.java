@@ -0,0 +1,23 @@
+package kmeans;
+
+import java.util.Random;
+
+/**
+ * Strategy for placing the initial centroids in k-means clustering. One
+ * instance may seed several runs at the same time, so implementations must
+ * keep the state of a call in locals rather than in fields.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public interface Seeding 
+{
+    /**
+     * Places the initial centroids.
+     * 
+     * @param data The dataset
+     * @param k Number of clusters
+     * @param rnd Randomizer
+     * @return Centroids, one row of attributes per cluster
+     */
+    double[] seed(Dataset data, int k, Random rnd);
+}
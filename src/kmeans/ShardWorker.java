@@ -0,0 +1,187 @@
+package kmeans;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Worker process for sharded k-means. The worker maps one shard of a binary
+ * dataset file (see MappedDataset), connects to the coordinator and answers
+ * its requests until told to stop. Only the instances of the shard are mapped,
+ * so each worker touches its own part of the file and nothing else. The labels of the shard, and any bounds kept by the assigner, stay in
+ * the worker between iterations, so each iteration only sends the centroids
+ * and the per-cluster sums over the wire. See ShardedKMeans for the protocol.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class ShardWorker 
+{
+    // The shard of the dataset
+    Dataset data;
+    // Index of the shard
+    int shard;
+    // Cluster index for each instance in the shard
+    int[] labels;
+    // Assigner for the current run
+    Assigner assigner;
+    
+    /**
+     * Creates a new worker.
+     * 
+     * @param data The shard of the dataset
+     * @param shard Index of the shard
+     */
+    public ShardWorker(Dataset data, int shard) {
+        this.data = data;
+        this.shard = shard;
+    }
+    
+    /**
+     * Runs a worker process.
+     * 
+     * @param args the command line arguments: host port file shard shards
+     * @throws IOException If the dataset can't be read, is not a binary dataset file or the connection fails
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 5) {
+            System.err.println("Usage: ShardWorker <host> <port> <file> <shard> <shards>");
+            System.exit(1);
+        }
+        int shard = Integer.parseInt(args[3]);
+        int shards = Integer.parseInt(args[4]);
+        Dataset data = MappedDataset.open(Paths.get(args[2]), shard, shards);
+        
+        ShardWorker w = new ShardWorker(data, shard);
+        try (Socket s = new Socket(args[0], Integer.parseInt(args[1]))) {
+            s.setTcpNoDelay(true);
+            w.serve(new DataInputStream(new BufferedInputStream(s.getInputStream(), 1 << 16)),
+                    new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), 1 << 16)));
+        }
+    }
+    
+    /**
+     * Introduces the worker to the coordinator and answers its requests until
+     * told to stop or the connection is closed.
+     * 
+     * @param in Stream from the coordinator
+     * @param out Stream to the coordinator
+     * @throws IOException If the connection fails or a request is invalid
+     */
+    public void serve(DataInputStream in, DataOutputStream out) throws IOException {
+        out.writeInt(ShardedKMeans.MAGIC);
+        out.writeInt(shard);
+        out.writeInt(data.size());
+        out.writeInt(data.dimensions());
+        out.flush();
+        
+        while (true) {
+            int type;
+            try {
+                type = in.readInt();
+            }
+            catch (EOFException ex) {
+                return;
+            }
+            
+            switch (type) {
+                case ShardedKMeans.SAMPLE: sample(in, out); break;
+                case ShardedKMeans.CENTROIDS: iterate(in, out); break;
+                case ShardedKMeans.LABELS: labels(out); break;
+                case ShardedKMeans.STOP: return;
+                default: throw new IOException("Unknown request " + type);
+            }
+            out.flush();
+        }
+    }
+    
+    /**
+     * Sends random instances of the shard, for seeding.
+     * 
+     * @param in Stream from the coordinator
+     * @param out Stream to the coordinator
+     * @throws IOException If the connection fails
+     */
+    private void sample(DataInputStream in, DataOutputStream out) throws IOException {
+        int count = Math.min(in.readInt(), data.size());
+        Random rnd = new Random(in.readLong());
+        int d = data.dimensions();
+        
+        // Reservoir of distinct instances
+        int[] pick = new int[count];
+        for (int i = 0; i < data.size(); i++) {
+            if (i < count) {
+                pick[i] = i;
+            }
+            else {
+                int r = rnd.nextInt(i + 1);
+                if (r < count) pick[r] = i;
+            }
+        }
+        
+        out.writeInt(count);
+        double[] row = new double[d];
+        for (int i : pick) {
+            Arrays.fill(row, 0);
+            data.add_to(i, row, 0);
+            for (int j = 0; j < d; j++) {
+                out.writeDouble(row[j]);
+            }
+        }
+    }
+    
+    /**
+     * Assigns the shard to the received centroids and sends the sums.
+     * 
+     * @param in Stream from the coordinator
+     * @param out Stream to the coordinator
+     * @throws IOException If the connection fails or the centroids don't match the shard
+     */
+    private void iterate(DataInputStream in, DataOutputStream out) throws IOException {
+        boolean first = in.readBoolean();
+        int k = in.readInt();
+        int d = data.dimensions();
+        double[] centroids = new double[k * d];
+        for (int i = 0; i < centroids.length; i++) {
+            centroids[i] = in.readDouble();
+        }
+        
+        // A new run starts with no labels
+        if (first) {
+            labels = new int[data.size()];
+            Arrays.fill(labels, -1);
+            assigner = Assigner.accelerated(data, k);
+            assigner.init(data, k);
+        }
+        if (assigner == null) {
+            throw new IOException("Iteration before the first one of a run");
+        }
+        
+        assigner.prepare(centroids);
+        ClusterSums sums = new ClusterSums(k, d);
+        assigner.assign_range(0, data.size(), centroids, labels, sums);
+        
+        out.writeInt(sums.changed);
+        out.writeLong(sums.distances);
+        for (int c = 0; c < k; c++) {
+            out.writeInt(sums.count[c]);
+        }
+        for (double v : sums.sum) {
+            out.writeDouble(v);
+        }
+    }
+    
+    /**
+     * Sends the labels of the shard.
+     * 
+     * @param out Stream to the coordinator
+     * @throws IOException If the connection fails
+     */
+    private void labels(DataOutputStream out) throws IOException {
+        int[] l = labels != null ? labels : new int[0];
+        out.writeInt(l.length);
+        for (int v : l) {
+            out.writeInt(v);
+        }
+    }
+}
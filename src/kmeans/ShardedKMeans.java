@@ -0,0 +1,393 @@
+package kmeans;
+
+import java.io.*;
+import java.net.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinator for k-means over a dataset split into shards, each owned by a
+ * worker process (see ShardWorker). In each iteration the coordinator sends
+ * the centroids to all workers, each worker assigns its shard and replies
+ * with its per-cluster sums and counts, and the coordinator merges them and
+ * recalculates the centroids. The traffic per iteration is O(k*d) per worker,
+ * no matter how large the shards are.
+ * 
+ * Workers connect to the coordinator over TCP, so they can run on other
+ * machines, but launch() starts them as local processes for a single machine
+ * or for testing. Messages are big-endian binary: each request starts with
+ * its type as an int.
+ * 
+ * <pre>
+ * worker hello     int magic "KMSH", int shard, int n, int d
+ * SAMPLE           int count, long seed
+ *   reply          int m, m*d doubles (m random instances of the shard)
+ * CENTROIDS        boolean first, int k, k*d doubles
+ *   reply          int changed, long distances, k ints counts, k*d doubles sums
+ * LABELS           (no data)
+ *   reply          int n, n ints
+ * STOP             (no data, no reply)
+ * </pre>
+ * 
+ * The initial centroids are placed by k-means++ on a random sample gathered
+ * from the shards. Empty clusters keep their centroid.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class ShardedKMeans implements Closeable
+{
+    // Magic number in the worker hello
+    static final int MAGIC = 0x48534D4B;
+    // Request types
+    static final int SAMPLE = 1;
+    static final int CENTROIDS = 2;
+    static final int LABELS = 3;
+    static final int STOP = 4;
+    
+    // Streams from the workers, in shard order
+    DataInputStream[] in;
+    // Streams to the workers, in shard order
+    DataOutputStream[] out;
+    // Connections to the workers
+    Socket[] sockets;
+    // Worker processes started by launch (null for external workers)
+    Process[] procs;
+    // Number of instances in each shard
+    int[] shard_n;
+    // Total number of instances
+    int n;
+    // Number of attributes
+    int d;
+    // Randomizer
+    Random rnd;
+    // Max number of iterations
+    int max_iterations = Integer.MAX_VALUE;
+    // Number of instances sampled for seeding
+    int sample_size = 10000;
+    // Number of distances calculated by the workers in the last run
+    long distances;
+    
+    /**
+     * Accepts connections from a number of workers.
+     * 
+     * @param server Socket the workers connect to
+     * @param workers Number of workers
+     * @param rnd Randomizer
+     * @throws IOException If a worker can't be accepted or sends an invalid hello
+     */
+    public ShardedKMeans(ServerSocket server, int workers, Random rnd) throws IOException {
+        this(server, workers, rnd, null);
+    }
+    
+    /**
+     * Accepts connections from a number of workers. If the workers are local
+     * processes, the wait is abandoned when one of them fails.
+     * 
+     * @param server Socket the workers connect to
+     * @param workers Number of workers
+     * @param rnd Randomizer
+     * @param procs Worker processes (null for external workers)
+     * @throws IOException If a worker can't be accepted or sends an invalid hello
+     */
+    private ShardedKMeans(ServerSocket server, int workers, Random rnd, Process[] procs) throws IOException {
+        this.rnd = rnd;
+        this.procs = procs;
+        in = new DataInputStream[workers];
+        out = new DataOutputStream[workers];
+        sockets = new Socket[workers];
+        shard_n = new int[workers];
+        
+        try {
+            for (int w = 0; w < workers; w++) {
+                Socket s = accept(server);
+                s.setTcpNoDelay(true);
+                DataInputStream i = new DataInputStream(new BufferedInputStream(s.getInputStream(), 1 << 16));
+                if (i.readInt() != MAGIC) {
+                    s.close();
+                    throw new IOException("Invalid hello from " + s.getRemoteSocketAddress());
+                }
+                int shard = i.readInt();
+                if (shard < 0 || shard >= workers || sockets[shard] != null) {
+                    s.close();
+                    throw new IOException("Invalid or duplicate shard " + shard);
+                }
+                sockets[shard] = s;
+                in[shard] = i;
+                out[shard] = new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), 1 << 16));
+                shard_n[shard] = i.readInt();
+                int sd = i.readInt();
+                if (w > 0 && sd != d) {
+                    throw new IOException("Shard " + shard + " has " + sd + " attributes, not " + d);
+                }
+                d = sd;
+                n += shard_n[shard];
+            }
+        }
+        catch (IOException ex) {
+            close();
+            throw ex;
+        }
+    }
+    
+    /**
+     * Waits for the next worker to connect.
+     * 
+     * @param server Socket the workers connect to
+     * @return Connection to the worker
+     * @throws IOException If the wait timed out or a local worker failed
+     */
+    private Socket accept(ServerSocket server) throws IOException {
+        while (true) {
+            try {
+                return server.accept();
+            }
+            catch (SocketTimeoutException ex) {
+                if (procs == null) throw ex;
+                for (Process p : procs) {
+                    if (!p.isAlive()) {
+                        throw new IOException("Worker exited with code " + p.exitValue() + " before connecting");
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Starts worker processes on this machine, each mapping one shard of a
+     * binary dataset file, and waits for them to connect. CSV and SVMlight
+     * files must be converted with MappedDataset.write first.
+     * 
+     * @param file The binary dataset file
+     * @param workers Number of workers
+     * @param rnd Randomizer
+     * @return The coordinator
+     * @throws IOException If the workers can't be started or don't connect
+     */
+    public static ShardedKMeans launch(Path file, int workers, Random rnd) throws IOException {
+        if (workers < 1) {
+            throw new IllegalArgumentException("At least one worker is required");
+        }
+        try (ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress())) {
+            // Short timeout, so failed workers are noticed while waiting
+            server.setSoTimeout(1000);
+            
+            // Same JVM, class path and modules as this process
+            String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+            Process[] procs = new Process[workers];
+            for (int w = 0; w < workers; w++) {
+                List<String> cmd = new ArrayList<>();
+                cmd.add(java);
+                cmd.add("-cp");
+                cmd.add(System.getProperty("java.class.path"));
+                if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+                    cmd.add("--add-modules");
+                    cmd.add("jdk.incubator.vector");
+                }
+                cmd.add(ShardWorker.class.getName());
+                cmd.add(server.getInetAddress().getHostAddress());
+                cmd.add(Integer.toString(server.getLocalPort()));
+                cmd.add(file.toAbsolutePath().toString());
+                cmd.add(Integer.toString(w));
+                cmd.add(Integer.toString(workers));
+                procs[w] = new ProcessBuilder(cmd).redirectOutput(ProcessBuilder.Redirect.DISCARD).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            }
+            
+            try {
+                return new ShardedKMeans(server, workers, rnd, procs);
+            }
+            catch (IOException ex) {
+                for (Process p : procs) {
+                    p.destroy();
+                }
+                throw ex;
+            }
+        }
+    }
+    
+    /**
+     * Sets the max number of iterations.
+     * 
+     * @param max_iterations Max number of iterations
+     */
+    public void set_max_iterations(int max_iterations) {
+        this.max_iterations = max_iterations;
+    }
+    
+    /**
+     * Sets the number of instances sampled from the shards for seeding.
+     * 
+     * @param sample_size Number of instances
+     */
+    public void set_sample_size(int sample_size) {
+        this.sample_size = sample_size;
+    }
+    
+    /**
+     * Returns the total number of instances in all shards.
+     * 
+     * @return Number of instances
+     */
+    public int size() {
+        return n;
+    }
+    
+    /**
+     * Returns the number of distances the workers calculated in the last run.
+     * 
+     * @return Number of distances
+     */
+    public long distances() {
+        return distances;
+    }
+    
+    /**
+     * Clusters the sharded dataset.
+     * 
+     * @param k Number of clusters
+     * @return Centroids, assignments in dataset order and number of iterations
+     * @throws IOException If a worker fails
+     */
+    public KMeansResult run(int k) throws IOException {
+        return run(seed(k), k);
+    }
+    
+    /**
+     * Clusters the sharded dataset from given initial centroids.
+     * 
+     * @param centroids Initial centroids, one row of attributes per cluster
+     * @param k Number of clusters
+     * @return Centroids, assignments in dataset order and number of iterations
+     * @throws IOException If a worker fails
+     */
+    public KMeansResult run(double[] centroids, int k) throws IOException {
+        centroids = centroids.clone();
+        distances = 0;
+        int iteration = 0;
+        boolean updated = true;
+        
+        while (updated && iteration < max_iterations) {
+            // Send the centroids to all workers before reading any reply, so
+            // the shards are assigned in parallel
+            for (DataOutputStream o : out) {
+                o.writeInt(CENTROIDS);
+                o.writeBoolean(iteration == 0);
+                o.writeInt(k);
+                for (double v : centroids) {
+                    o.writeDouble(v);
+                }
+                o.flush();
+            }
+            
+            // Merge the sums in shard order
+            ClusterSums sums = new ClusterSums(k, d);
+            for (DataInputStream i : in) {
+                sums.changed += i.readInt();
+                sums.distances += i.readLong();
+                for (int c = 0; c < k; c++) {
+                    sums.count[c] += i.readInt();
+                }
+                for (int j = 0; j < sums.sum.length; j++) {
+                    sums.sum[j] += i.readDouble();
+                }
+            }
+            distances += sums.distances;
+            iteration++;
+            
+            sums.recalc_centers(centroids, 0);
+            updated = sums.changed > 0;
+        }
+        
+        // Collect the labels in dataset order
+        for (DataOutputStream o : out) {
+            o.writeInt(LABELS);
+            o.flush();
+        }
+        int[] labels = new int[n];
+        int pos = 0;
+        for (int w = 0; w < in.length; w++) {
+            int m = in[w].readInt();
+            if (m != shard_n[w]) {
+                throw new IOException("Shard " + w + " sent " + m + " labels, expected " + shard_n[w]);
+            }
+            for (int i = 0; i < m; i++) {
+                labels[pos++] = in[w].readInt();
+            }
+        }
+        
+        double[][] res = new double[k][];
+        for (int c = 0; c < k; c++) {
+            res[c] = Arrays.copyOfRange(centroids, c * d, (c + 1) * d);
+        }
+        return new KMeansResult(res, labels, iteration);
+    }
+    
+    /**
+     * Places the initial centroids by k-means++ on a random sample of the
+     * shards, with each shard contributing in proportion to its size.
+     * 
+     * @param k Number of clusters
+     * @return Centroids, one row of attributes per cluster
+     * @throws IOException If a worker fails
+     */
+    double[] seed(int k) throws IOException {
+        int total = Math.max(k, Math.min(sample_size, n));
+        for (int w = 0; w < out.length; w++) {
+            out[w].writeInt(SAMPLE);
+            out[w].writeInt((int)Math.ceil((double)total * shard_n[w] / n));
+            out[w].writeLong(rnd.nextLong());
+            out[w].flush();
+        }
+        
+        double[] values = new double[0];
+        int rows = 0;
+        for (DataInputStream i : in) {
+            int m = i.readInt();
+            values = Arrays.copyOf(values, (rows + m) * d);
+            for (int j = 0; j < m * d; j++) {
+                values[rows * d + j] = i.readDouble();
+            }
+            rows += m;
+        }
+        if (rows < k) {
+            throw new IllegalArgumentException("Only " + rows + " instances for " + k + " clusters");
+        }
+        return KMeansPlusPlus.seed(new DenseDataset(values, d), null, k, rnd);
+    }
+    
+    /**
+     * Stops the workers and closes the connections.
+     */
+    @Override
+    public void close() {
+        for (int w = 0; w < sockets.length; w++) {
+            if (sockets[w] == null) continue;
+            try {
+                out[w].writeInt(STOP);
+                out[w].flush();
+            }
+            catch (IOException ex) {
+                // The worker is already gone
+            }
+            try {
+                sockets[w].close();
+            }
+            catch (IOException ex) {
+                // Nothing more to do
+            }
+        }
+        if (procs != null) {
+            for (Process p : procs) {
+                try {
+                    if (!p.waitFor(10, TimeUnit.SECONDS)) {
+                        p.destroy();
+                    }
+                }
+                catch (InterruptedException ex) {
+                    p.destroy();
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
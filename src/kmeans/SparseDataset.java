@@ -0,0 +1,190 @@
+package kmeans;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+
+/**
+ * Dataset stored in compressed sparse row (CSR) form, for example word counts
+ * of documents over a large vocabulary. Only the non-zero values are stored,
+ * with their attribute index, so memory and distance calculations scale with
+ * the number of non-zeros instead of the number of attributes. The squared
+ * norm of each instance is cached, and distances to a centroid are calculated
+ * as ||x||^2 - 2 x.c + ||c||^2, touching only the non-zeros of the instance
+ * when the norm of the centroid is known.
+ *
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class SparseDataset extends Dataset
+{
+    // Start of each row in the index and value arrays, n+1 entries
+    int[] row_ptr;
+    // Attribute index of each non-zero value, increasing within a row
+    int[] cols;
+    // Non-zero values
+    double[] vals;
+    // Squared norm of each instance
+    double[] norms;
+
+    /**
+     * Creates a new dataset from CSR arrays. The arrays are not copied.
+     *
+     * @param d Number of attributes
+     * @param row_ptr Start of each row in the index and value arrays, n+1 entries
+     * @param cols Attribute index of each non-zero value, increasing within a row
+     * @param vals Non-zero values
+     */
+    public SparseDataset(int d, int[] row_ptr, int[] cols, double[] vals) {
+        super(row_ptr.length - 1, d);
+        if (cols.length != vals.length || row_ptr[n] > cols.length) {
+            throw new IllegalArgumentException("Index and value arrays don't match the row pointers");
+        }
+        this.row_ptr = row_ptr;
+        this.cols = cols;
+        this.vals = vals;
+
+        norms = new double[n];
+        for (int i = 0; i < n; i++) {
+            for (int p = row_ptr[i]; p < row_ptr[i + 1]; p++) {
+                if (cols[p] < 0 || cols[p] >= d || (p > row_ptr[i] && cols[p] <= cols[p - 1])) {
+                    throw new IllegalArgumentException("Invalid attribute index " + cols[p] + " in row " + i);
+                }
+                norms[i] += vals[p] * vals[p];
+            }
+        }
+    }
+
+    /**
+     * Returns the number of non-zero values.
+     *
+     * @return Number of non-zeros
+     */
+    public int non_zeros() {
+        return row_ptr[n];
+    }
+
+    @Override
+    public double get(int i, int j) {
+        int p = Arrays.binarySearch(cols, row_ptr[i], row_ptr[i + 1], j);
+        return p >= 0 ? vals[p] : 0;
+    }
+
+    @Override
+    public double dot(int i, double[] c, int off) {
+        double sum = 0;
+        for (int p = row_ptr[i]; p < row_ptr[i + 1]; p++) {
+            sum += vals[p] * c[off + cols[p]];
+        }
+        return sum;
+    }
+
+    @Override
+    public double sq_euclidean(int i, double[] c, int off) {
+        return sq_euclidean(i, c, off, sq_norm(c, off, d));
+    }
+
+    @Override
+    public double sq_euclidean(int i, double[] c, int off, double c_norm) {
+        return Math.max(norms[i] + c_norm - 2 * dot(i, c, off), 0);
+    }
+
+    @Override
+    public void sq_euclidean_all(int i, double[] c, int k, double[] c_norms, double[] out) {
+        for (int cl = 0; cl < k; cl++) {
+            out[cl] = sq_euclidean(i, c, cl * d, c_norms[cl]);
+        }
+    }
+
+    @Override
+    public Dataset normalized() {
+        double[] nv = new double[vals.length];
+        for (int i = 0; i < n; i++) {
+            double norm = Math.sqrt(norms[i]);
+            for (int p = row_ptr[i]; p < row_ptr[i + 1]; p++) {
+                nv[p] = norm > 0 ? vals[p] / norm : vals[p];
+            }
+        }
+        return new SparseDataset(d, row_ptr, cols, nv);
+    }
+    
+    @Override
+    public void add_to(int i, double[] sum, int off) {
+        for (int p = row_ptr[i]; p < row_ptr[i + 1]; p++) {
+            sum[off + cols[p]] += vals[p];
+        }
+    }
+
+    @Override
+    public void sub_from(int i, double[] sum, int off) {
+        for (int p = row_ptr[i]; p < row_ptr[i + 1]; p++) {
+            sum[off + cols[p]] -= vals[p];
+        }
+    }
+
+    /**
+     * Reads a sparse dataset in SVMlight format: one instance per line with
+     * <code>index:value</code> pairs, where indices start at 1 and increase.
+     * A leading label without a colon, and anything after a #, is ignored.
+     * The number of attributes is the highest index.
+     *
+     * @param file The file
+     * @return The dataset
+     * @throws IOException If the file can't be read or has invalid lines
+     */
+    public static SparseDataset read(Path file) throws IOException {
+        int[] row_ptr = new int[1024];
+        int[] cols = new int[1 << 16];
+        double[] vals = new double[1 << 16];
+        int n = 0;
+        int nnz = 0;
+        int d = 0;
+
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int line_no = 0;
+            while ((line = in.readLine()) != null) {
+                line_no++;
+                int hash = line.indexOf('#');
+                if (hash >= 0) line = line.substring(0, hash);
+                line = line.trim();
+                if (line.isEmpty()) continue;
+
+                for (String tok : line.split("\\s+")) {
+                    int colon = tok.indexOf(':');
+                    if (colon < 0) continue;
+                    int j;
+                    double v;
+                    try {
+                        j = Integer.parseInt(tok, 0, colon, 10) - 1;
+                        v = Double.parseDouble(tok.substring(colon + 1));
+                    }
+                    catch (NumberFormatException ex) {
+                        throw new IOException("Invalid value '" + tok + "' on line " + line_no + " in " + file);
+                    }
+                    if (j < 0 || (nnz > row_ptr[n] && j <= cols[nnz - 1])) {
+                        throw new IOException("Indices must start at 1 and increase on line " + line_no + " in " + file);
+                    }
+                    if (v == 0) continue;
+
+                    if (nnz == cols.length) {
+                        cols = Arrays.copyOf(cols, nnz * 2);
+                        vals = Arrays.copyOf(vals, nnz * 2);
+                    }
+                    cols[nnz] = j;
+                    vals[nnz] = v;
+                    nnz++;
+                    d = Math.max(d, j + 1);
+                }
+
+                n++;
+                if (n + 1 > row_ptr.length) {
+                    row_ptr = Arrays.copyOf(row_ptr, row_ptr.length * 2);
+                }
+                row_ptr[n] = nnz;
+            }
+        }
+
+        return new SparseDataset(d, Arrays.copyOf(row_ptr, n + 1), Arrays.copyOf(cols, nnz), Arrays.copyOf(vals, nnz));
+    }
+}
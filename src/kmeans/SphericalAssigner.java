@@ -0,0 +1,37 @@
+package kmeans;
+
+/**
+ * Assignment for spherical k-means, where instances and centroids have unit
+ * length. The closest centroid by cosine similarity is the one with the
+ * highest dot product, so no differences, squares or square roots are
+ * calculated. Since ||x - c||^2 = 2 - 2 x.c for unit vectors, it picks the
+ * same centroid as the plain assignment, up to rounding of near ties.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class SphericalAssigner extends Assigner 
+{
+    @Override
+    public void prepare(double[] centroids) {
+        // Centroids have unit length, so no norms are needed
+    }
+    
+    @Override
+    public void assign_range(int lo, int hi, double[] centroids, int[] labels, ClusterSums sums) {
+        for (int i = lo; i < hi; i++) {
+            // Centroid with the highest cosine similarity
+            int bestC = 0;
+            double bestS = Double.NEGATIVE_INFINITY;
+            for (int c = 0; c < k; c++) {
+                double s = data.dot(i, centroids, c * d);
+                if (s > bestS) {
+                    bestS = s;
+                    bestC = c;
+                }
+            }
+            
+            assign(i, bestC, labels, sums);
+        }
+        sums.distances += (long)(hi - lo) * k;
+    }
+}
@@ -0,0 +1,35 @@
+package kmeans;
+
+/**
+ * Quality and timing of one k in a k-sweep.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class SweepEntry 
+{
+    // Number of clusters
+    public int k;
+    // The clustering
+    public KMeansResult result;
+    // Sum of squared distances from each instance to its centroid
+    public double inertia;
+    // Mean simplified silhouette, using distances to centroids (higher is better)
+    public double silhouette;
+    // Davies-Bouldin index (lower is better)
+    public double davies_bouldin;
+    // Time to cluster, in milliseconds
+    public double millis;
+    // True if the run was warm-started from the clustering with k-1 clusters
+    public boolean warm;
+    
+    /**
+     * Creates a new entry.
+     * 
+     * @param k Number of clusters
+     * @param result The clustering
+     */
+    public SweepEntry(int k, KMeansResult result) {
+        this.k = k;
+        this.result = result;
+    }
+}
@@ -0,0 +1,480 @@
+package kmeans;
+
+import java.nio.ByteBuffer;
+import jdk.incubator.vector.*;
+
+/**
+ * SIMD distance kernel on the incubator Vector API. The attributes are processed
+ * as many lanes at a time as the CPU supports, with the remaining attributes
+ * handled by a scalar loop. The batch kernel compares one vector with four
+ * centroids at a time, so each chunk of the vector is loaded once for all four.
+ * Float32 and quantized int8 vectors are widened to double lanes as they are
+ * loaded, so they stream fewer bytes but are summed in double.
+ * Only loaded by DistanceKernel when the jdk.incubator.vector module is present.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class VectorKernel extends DistanceKernel 
+{
+    // Widest vector shape supported by the CPU
+    static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    // Float shape with the same number of lanes, widened to SPECIES
+    static final VectorSpecies<Float> HALF = VectorSpecies.of(float.class, VectorShape.forBitSize(SPECIES.vectorBitSize() / 2));
+    // Eight bytes, widened to SPECIES in one or more parts
+    static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_64;
+    // Number of SPECIES vectors per BYTES vector
+    static final int PARTS = BYTES.length() / SPECIES.length();
+    
+    @Override
+    public double sq_euclidean(double[] a, int ao, double[] b, int bo, int d) {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(d);
+        int j = 0;
+        for (; j < bound; j += SPECIES.length()) {
+            DoubleVector diff = DoubleVector.fromArray(SPECIES, a, ao + j).sub(DoubleVector.fromArray(SPECIES, b, bo + j));
+            acc = diff.fma(diff, acc);
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        
+        // Remaining attributes
+        for (; j < d; j++) {
+            double diff = a[ao + j] - b[bo + j];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+    
+    @Override
+    public double dot(double[] a, int ao, double[] b, int bo, int d) {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(d);
+        int j = 0;
+        for (; j < bound; j += SPECIES.length()) {
+            acc = DoubleVector.fromArray(SPECIES, a, ao + j).fma(DoubleVector.fromArray(SPECIES, b, bo + j), acc);
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        
+        // Remaining attributes
+        for (; j < d; j++) {
+            sum += a[ao + j] * b[bo + j];
+        }
+        return sum;
+    }
+    
+    @Override
+    public double sq_euclidean(float[] a, int ao, double[] b, int bo, int d) {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(d);
+        int j = 0;
+        for (; j < bound; j += SPECIES.length()) {
+            DoubleVector x = (DoubleVector)FloatVector.fromArray(HALF, a, ao + j).convertShape(VectorOperators.F2D, SPECIES, 0);
+            DoubleVector diff = x.sub(DoubleVector.fromArray(SPECIES, b, bo + j));
+            acc = diff.fma(diff, acc);
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        
+        // Remaining attributes
+        for (; j < d; j++) {
+            double diff = a[ao + j] - b[bo + j];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+    
+    @Override
+    public double dot(float[] a, int ao, double[] b, int bo, int d) {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(d);
+        int j = 0;
+        for (; j < bound; j += SPECIES.length()) {
+            DoubleVector x = (DoubleVector)FloatVector.fromArray(HALF, a, ao + j).convertShape(VectorOperators.F2D, SPECIES, 0);
+            acc = x.fma(DoubleVector.fromArray(SPECIES, b, bo + j), acc);
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        
+        // Remaining attributes
+        for (; j < d; j++) {
+            sum += a[ao + j] * b[bo + j];
+        }
+        return sum;
+    }
+    
+    @Override
+    public double sq_euclidean(ByteBuffer a, int ao, double[] b, int bo, int d) {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(d);
+        int j = 0;
+        for (; j < bound; j += SPECIES.length()) {
+            DoubleVector diff = DoubleVector.fromByteBuffer(SPECIES, a, ao + j * 8, a.order()).sub(DoubleVector.fromArray(SPECIES, b, bo + j));
+            acc = diff.fma(diff, acc);
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        
+        // Remaining attributes
+        for (; j < d; j++) {
+            double diff = a.getDouble(ao + j * 8) - b[bo + j];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+    
+    @Override
+    public double dot(ByteBuffer a, int ao, double[] b, int bo, int d) {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(d);
+        int j = 0;
+        for (; j < bound; j += SPECIES.length()) {
+            acc = DoubleVector.fromByteBuffer(SPECIES, a, ao + j * 8, a.order()).fma(DoubleVector.fromArray(SPECIES, b, bo + j), acc);
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        
+        // Remaining attributes
+        for (; j < d; j++) {
+            sum += a.getDouble(ao + j * 8) * b[bo + j];
+        }
+        return sum;
+    }
+    
+    @Override
+    public double sq_euclidean(byte[] q, int qo, double[] scale, double[] offset, double[] b, int bo, int d) {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int bound = BYTES.loopBound(d);
+        int j = 0;
+        for (; j < bound; j += BYTES.length()) {
+            ByteVector codes = ByteVector.fromArray(BYTES, q, qo + j);
+            for (int p = 0; p < PARTS; p++) {
+                int jp = j + p * SPECIES.length();
+                DoubleVector x = (DoubleVector)codes.convertShape(VectorOperators.B2D, SPECIES, p);
+                x = x.fma(DoubleVector.fromArray(SPECIES, scale, jp), DoubleVector.fromArray(SPECIES, offset, jp));
+                DoubleVector diff = x.sub(DoubleVector.fromArray(SPECIES, b, bo + jp));
+                acc = diff.fma(diff, acc);
+            }
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        
+        // Remaining attributes
+        for (; j < d; j++) {
+            double diff = offset[j] + scale[j] * q[qo + j] - b[bo + j];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+    
+    @Override
+    public double dot(byte[] q, int qo, double[] scale, double[] offset, double[] b, int bo, int d) {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int bound = BYTES.loopBound(d);
+        int j = 0;
+        for (; j < bound; j += BYTES.length()) {
+            ByteVector codes = ByteVector.fromArray(BYTES, q, qo + j);
+            for (int p = 0; p < PARTS; p++) {
+                int jp = j + p * SPECIES.length();
+                DoubleVector x = (DoubleVector)codes.convertShape(VectorOperators.B2D, SPECIES, p);
+                x = x.fma(DoubleVector.fromArray(SPECIES, scale, jp), DoubleVector.fromArray(SPECIES, offset, jp));
+                acc = x.fma(DoubleVector.fromArray(SPECIES, b, bo + jp), acc);
+            }
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        
+        // Remaining attributes
+        for (; j < d; j++) {
+            sum += (offset[j] + scale[j] * q[qo + j]) * b[bo + j];
+        }
+        return sum;
+    }
+    
+    @Override
+    public void dot_2x4(double[] x, int xo0, int xo1, double[] c, int co, int stride, int d, double[] out, int oo0, int oo1) {
+        int bound = SPECIES.loopBound(d);
+        int c0 = co;
+        int c1 = c0 + stride;
+        int c2 = c1 + stride;
+        int c3 = c2 + stride;
+        
+        // Eight accumulators: each loaded vector is used two or four times
+        DoubleVector a00 = DoubleVector.zero(SPECIES);
+        DoubleVector a01 = DoubleVector.zero(SPECIES);
+        DoubleVector a02 = DoubleVector.zero(SPECIES);
+        DoubleVector a03 = DoubleVector.zero(SPECIES);
+        DoubleVector a10 = DoubleVector.zero(SPECIES);
+        DoubleVector a11 = DoubleVector.zero(SPECIES);
+        DoubleVector a12 = DoubleVector.zero(SPECIES);
+        DoubleVector a13 = DoubleVector.zero(SPECIES);
+        int j = 0;
+        for (; j < bound; j += SPECIES.length()) {
+            DoubleVector x0 = DoubleVector.fromArray(SPECIES, x, xo0 + j);
+            DoubleVector x1 = DoubleVector.fromArray(SPECIES, x, xo1 + j);
+            DoubleVector v = DoubleVector.fromArray(SPECIES, c, c0 + j);
+            a00 = x0.fma(v, a00);
+            a10 = x1.fma(v, a10);
+            v = DoubleVector.fromArray(SPECIES, c, c1 + j);
+            a01 = x0.fma(v, a01);
+            a11 = x1.fma(v, a11);
+            v = DoubleVector.fromArray(SPECIES, c, c2 + j);
+            a02 = x0.fma(v, a02);
+            a12 = x1.fma(v, a12);
+            v = DoubleVector.fromArray(SPECIES, c, c3 + j);
+            a03 = x0.fma(v, a03);
+            a13 = x1.fma(v, a13);
+        }
+        double s00 = a00.reduceLanes(VectorOperators.ADD);
+        double s01 = a01.reduceLanes(VectorOperators.ADD);
+        double s02 = a02.reduceLanes(VectorOperators.ADD);
+        double s03 = a03.reduceLanes(VectorOperators.ADD);
+        double s10 = a10.reduceLanes(VectorOperators.ADD);
+        double s11 = a11.reduceLanes(VectorOperators.ADD);
+        double s12 = a12.reduceLanes(VectorOperators.ADD);
+        double s13 = a13.reduceLanes(VectorOperators.ADD);
+        
+        // Remaining attributes
+        for (; j < d; j++) {
+            double x0 = x[xo0 + j];
+            double x1 = x[xo1 + j];
+            s00 += x0 * c[c0 + j];
+            s01 += x0 * c[c1 + j];
+            s02 += x0 * c[c2 + j];
+            s03 += x0 * c[c3 + j];
+            s10 += x1 * c[c0 + j];
+            s11 += x1 * c[c1 + j];
+            s12 += x1 * c[c2 + j];
+            s13 += x1 * c[c3 + j];
+        }
+        out[oo0] += s00;
+        out[oo0 + 1] += s01;
+        out[oo0 + 2] += s02;
+        out[oo0 + 3] += s03;
+        out[oo1] += s10;
+        out[oo1 + 1] += s11;
+        out[oo1 + 2] += s12;
+        out[oo1 + 3] += s13;
+    }
+    
+    @Override
+    public void sq_euclidean_all(double[] x, int xo, double[] c, int k, int d, double[] out) {
+        int bound = SPECIES.loopBound(d);
+        int i = 0;
+        
+        // Four centroids at a time
+        for (; i + 3 < k; i += 4) {
+            int o0 = i * d;
+            int o1 = o0 + d;
+            int o2 = o1 + d;
+            int o3 = o2 + d;
+            DoubleVector acc0 = DoubleVector.zero(SPECIES);
+            DoubleVector acc1 = DoubleVector.zero(SPECIES);
+            DoubleVector acc2 = DoubleVector.zero(SPECIES);
+            DoubleVector acc3 = DoubleVector.zero(SPECIES);
+            int j = 0;
+            for (; j < bound; j += SPECIES.length()) {
+                DoubleVector xv = DoubleVector.fromArray(SPECIES, x, xo + j);
+                DoubleVector d0 = xv.sub(DoubleVector.fromArray(SPECIES, c, o0 + j));
+                DoubleVector d1 = xv.sub(DoubleVector.fromArray(SPECIES, c, o1 + j));
+                DoubleVector d2 = xv.sub(DoubleVector.fromArray(SPECIES, c, o2 + j));
+                DoubleVector d3 = xv.sub(DoubleVector.fromArray(SPECIES, c, o3 + j));
+                acc0 = d0.fma(d0, acc0);
+                acc1 = d1.fma(d1, acc1);
+                acc2 = d2.fma(d2, acc2);
+                acc3 = d3.fma(d3, acc3);
+            }
+            double s0 = acc0.reduceLanes(VectorOperators.ADD);
+            double s1 = acc1.reduceLanes(VectorOperators.ADD);
+            double s2 = acc2.reduceLanes(VectorOperators.ADD);
+            double s3 = acc3.reduceLanes(VectorOperators.ADD);
+            
+            // Remaining attributes
+            for (; j < d; j++) {
+                double xj = x[xo + j];
+                double e0 = xj - c[o0 + j];
+                double e1 = xj - c[o1 + j];
+                double e2 = xj - c[o2 + j];
+                double e3 = xj - c[o3 + j];
+                s0 += e0 * e0;
+                s1 += e1 * e1;
+                s2 += e2 * e2;
+                s3 += e3 * e3;
+            }
+            out[i] = s0;
+            out[i + 1] = s1;
+            out[i + 2] = s2;
+            out[i + 3] = s3;
+        }
+        
+        // Remaining centroids
+        for (; i < k; i++) {
+            out[i] = sq_euclidean(x, xo, c, i * d, d);
+        }
+    }
+    
+    @Override
+    public void sq_euclidean_all(float[] x, int xo, double[] c, int k, int d, double[] out) {
+        int bound = SPECIES.loopBound(d);
+        int i = 0;
+        
+        // Four centroids at a time, widening each chunk of the vector once
+        for (; i + 3 < k; i += 4) {
+            int o0 = i * d;
+            int o1 = o0 + d;
+            int o2 = o1 + d;
+            int o3 = o2 + d;
+            DoubleVector acc0 = DoubleVector.zero(SPECIES);
+            DoubleVector acc1 = DoubleVector.zero(SPECIES);
+            DoubleVector acc2 = DoubleVector.zero(SPECIES);
+            DoubleVector acc3 = DoubleVector.zero(SPECIES);
+            int j = 0;
+            for (; j < bound; j += SPECIES.length()) {
+                DoubleVector xv = (DoubleVector)FloatVector.fromArray(HALF, x, xo + j).convertShape(VectorOperators.F2D, SPECIES, 0);
+                DoubleVector d0 = xv.sub(DoubleVector.fromArray(SPECIES, c, o0 + j));
+                DoubleVector d1 = xv.sub(DoubleVector.fromArray(SPECIES, c, o1 + j));
+                DoubleVector d2 = xv.sub(DoubleVector.fromArray(SPECIES, c, o2 + j));
+                DoubleVector d3 = xv.sub(DoubleVector.fromArray(SPECIES, c, o3 + j));
+                acc0 = d0.fma(d0, acc0);
+                acc1 = d1.fma(d1, acc1);
+                acc2 = d2.fma(d2, acc2);
+                acc3 = d3.fma(d3, acc3);
+            }
+            double s0 = acc0.reduceLanes(VectorOperators.ADD);
+            double s1 = acc1.reduceLanes(VectorOperators.ADD);
+            double s2 = acc2.reduceLanes(VectorOperators.ADD);
+            double s3 = acc3.reduceLanes(VectorOperators.ADD);
+            
+            // Remaining attributes
+            for (; j < d; j++) {
+                double xj = x[xo + j];
+                double e0 = xj - c[o0 + j];
+                double e1 = xj - c[o1 + j];
+                double e2 = xj - c[o2 + j];
+                double e3 = xj - c[o3 + j];
+                s0 += e0 * e0;
+                s1 += e1 * e1;
+                s2 += e2 * e2;
+                s3 += e3 * e3;
+            }
+            out[i] = s0;
+            out[i + 1] = s1;
+            out[i + 2] = s2;
+            out[i + 3] = s3;
+        }
+        
+        // Remaining centroids
+        for (; i < k; i++) {
+            out[i] = sq_euclidean(x, xo, c, i * d, d);
+        }
+    }
+    
+    @Override
+    public void sq_euclidean_all(byte[] q, int qo, double[] scale, double[] offset, double[] c, int k, int d, double[] out) {
+        int bound = BYTES.loopBound(d);
+        int i = 0;
+        
+        // Four centroids at a time, decoding each chunk of the vector once
+        for (; i + 3 < k; i += 4) {
+            int o0 = i * d;
+            int o1 = o0 + d;
+            int o2 = o1 + d;
+            int o3 = o2 + d;
+            DoubleVector acc0 = DoubleVector.zero(SPECIES);
+            DoubleVector acc1 = DoubleVector.zero(SPECIES);
+            DoubleVector acc2 = DoubleVector.zero(SPECIES);
+            DoubleVector acc3 = DoubleVector.zero(SPECIES);
+            int j = 0;
+            for (; j < bound; j += BYTES.length()) {
+                ByteVector codes = ByteVector.fromArray(BYTES, q, qo + j);
+                for (int p = 0; p < PARTS; p++) {
+                    int jp = j + p * SPECIES.length();
+                    DoubleVector xv = (DoubleVector)codes.convertShape(VectorOperators.B2D, SPECIES, p);
+                    xv = xv.fma(DoubleVector.fromArray(SPECIES, scale, jp), DoubleVector.fromArray(SPECIES, offset, jp));
+                    DoubleVector d0 = xv.sub(DoubleVector.fromArray(SPECIES, c, o0 + jp));
+                    DoubleVector d1 = xv.sub(DoubleVector.fromArray(SPECIES, c, o1 + jp));
+                    DoubleVector d2 = xv.sub(DoubleVector.fromArray(SPECIES, c, o2 + jp));
+                    DoubleVector d3 = xv.sub(DoubleVector.fromArray(SPECIES, c, o3 + jp));
+                    acc0 = d0.fma(d0, acc0);
+                    acc1 = d1.fma(d1, acc1);
+                    acc2 = d2.fma(d2, acc2);
+                    acc3 = d3.fma(d3, acc3);
+                }
+            }
+            double s0 = acc0.reduceLanes(VectorOperators.ADD);
+            double s1 = acc1.reduceLanes(VectorOperators.ADD);
+            double s2 = acc2.reduceLanes(VectorOperators.ADD);
+            double s3 = acc3.reduceLanes(VectorOperators.ADD);
+            
+            // Remaining attributes
+            for (; j < d; j++) {
+                double xj = offset[j] + scale[j] * q[qo + j];
+                double e0 = xj - c[o0 + j];
+                double e1 = xj - c[o1 + j];
+                double e2 = xj - c[o2 + j];
+                double e3 = xj - c[o3 + j];
+                s0 += e0 * e0;
+                s1 += e1 * e1;
+                s2 += e2 * e2;
+                s3 += e3 * e3;
+            }
+            out[i] = s0;
+            out[i + 1] = s1;
+            out[i + 2] = s2;
+            out[i + 3] = s3;
+        }
+        
+        // Remaining centroids
+        for (; i < k; i++) {
+            out[i] = sq_euclidean(q, qo, scale, offset, c, i * d, d);
+        }
+    }
+    
+    @Override
+    public void sq_euclidean_all(ByteBuffer x, int xo, double[] c, int k, int d, double[] out) {
+        int bound = SPECIES.loopBound(d);
+        int i = 0;
+        
+        // Four centroids at a time, loading each chunk of the vector once
+        for (; i + 3 < k; i += 4) {
+            int o0 = i * d;
+            int o1 = o0 + d;
+            int o2 = o1 + d;
+            int o3 = o2 + d;
+            DoubleVector acc0 = DoubleVector.zero(SPECIES);
+            DoubleVector acc1 = DoubleVector.zero(SPECIES);
+            DoubleVector acc2 = DoubleVector.zero(SPECIES);
+            DoubleVector acc3 = DoubleVector.zero(SPECIES);
+            int j = 0;
+            for (; j < bound; j += SPECIES.length()) {
+                DoubleVector xv = DoubleVector.fromByteBuffer(SPECIES, x, xo + j * 8, x.order());
+                DoubleVector d0 = xv.sub(DoubleVector.fromArray(SPECIES, c, o0 + j));
+                DoubleVector d1 = xv.sub(DoubleVector.fromArray(SPECIES, c, o1 + j));
+                DoubleVector d2 = xv.sub(DoubleVector.fromArray(SPECIES, c, o2 + j));
+                DoubleVector d3 = xv.sub(DoubleVector.fromArray(SPECIES, c, o3 + j));
+                acc0 = d0.fma(d0, acc0);
+                acc1 = d1.fma(d1, acc1);
+                acc2 = d2.fma(d2, acc2);
+                acc3 = d3.fma(d3, acc3);
+            }
+            double s0 = acc0.reduceLanes(VectorOperators.ADD);
+            double s1 = acc1.reduceLanes(VectorOperators.ADD);
+            double s2 = acc2.reduceLanes(VectorOperators.ADD);
+            double s3 = acc3.reduceLanes(VectorOperators.ADD);
+            
+            // Remaining attributes
+            for (; j < d; j++) {
+                double xj = x.getDouble(xo + j * 8);
+                double e0 = xj - c[o0 + j];
+                double e1 = xj - c[o1 + j];
+                double e2 = xj - c[o2 + j];
+                double e3 = xj - c[o3 + j];
+                s0 += e0 * e0;
+                s1 += e1 * e1;
+                s2 += e2 * e2;
+                s3 += e3 * e3;
+            }
+            out[i] = s0;
+            out[i + 1] = s1;
+            out[i + 2] = s2;
+            out[i + 3] = s3;
+        }
+        
+        // Remaining centroids
+        for (; i < k; i++) {
+            out[i] = sq_euclidean(x, xo, c, i * d, d);
+        }
+    }
+}
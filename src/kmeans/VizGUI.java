@@ -0,0 +1,188 @@
+package kmeans;
+
+import java.awt.*;
+import javax.swing.*;
+
+/**
+ * Main class for the k-means visualization. The listener methods run on the
+ * clustering thread and only publish snapshots to the render panel, which
+ * draws them at its own frame rate. Pauses between the steps, to follow the
+ * demo at a readable pace, are opt-in with set_paced since they hold up the
+ * clustering thread.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+public class VizGUI implements KMeansListener {
+    // The render panel
+    RenderPanel rp;
+    // The GUI frame
+    JFrame frame;
+    // State label
+    JLabel state;
+    // If true, the clustering thread pauses after each step of a run
+    boolean paced = false;
+    
+    /**
+     * New visualization GUI.
+     */
+    public VizGUI() {
+        
+    }
+    
+    /**
+     * Sets if the clustering thread pauses after each step of a run and
+     * animates the centroids, so the steps of the demo can be followed. Off
+     * by default, so a run is only slowed down by publishing the snapshots.
+     * 
+     * @param paced True to pause after each step
+     */
+    public void set_paced(boolean paced) {
+        this.paced = paced;
+    }
+    
+    /**
+     * Shows the GUI.
+     */
+    public void start() {
+        rp = new RenderPanel();
+        
+        frame = new JFrame("K-Means Clustering");
+        frame.setSize(RenderPanel.w + 20, RenderPanel.h + 60);
+        frame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
+        frame.getContentPane().setLayout(new FlowLayout());
+        
+        // State label
+        state = new JLabel(" ");
+        state.setPreferredSize(new Dimension(RenderPanel.w, 20));
+        state.setHorizontalAlignment(SwingConstants.CENTER);
+        Font font = new Font("LucidaGrande", Font.BOLD, 16);  
+        state.setFont(font);
+        frame.getContentPane().add(state);
+        
+        // Render panel
+        frame.getContentPane().add(rp);
+        
+        // Show frame
+        frame.setVisible(true);
+    }
+    
+    /**
+     * Set GUI state to init.
+     * 
+     * @param data The instances to show
+     */
+    @Override
+    public void init(Dataset data) {
+        set_state("1. The data points");
+        
+        rp.clear();
+        rp.init(data);
+        
+        sleep(2000);
+    }
+    
+    /**
+     * Set GUI state to random centroid placement.
+     * 
+     * @param centroids The random centroids
+     */
+    @Override
+    public void place_centroids(double[] centroids) {
+        set_state("2. Place " + centroids.length / rp.data.dimensions() + " random centroids");
+        
+        rp.place_centroids(centroids);
+        
+        // Animate circles
+        animate(24);
+        
+        sleep(500);
+    }
+    
+    /**
+     * Passes the instances that changed cluster to the render panel.
+     * 
+     * @param moved Indices of the instances that changed cluster
+     * @param count Number of instances in moved
+     */
+    @Override
+    public void moved(int[] moved, int count) {
+        rp.moved(moved, count);
+    }
+    
+    /**
+     * Updates the GUI after an iteration.
+     * 
+     * @param centroids New centroids to render
+     * @param labels Cluster index for each instance
+     */
+    @Override
+    public void iterate(double[] centroids, int[] labels) {
+        set_state("3. Move centroids to center of clusters and update assignments");
+        
+        rp.iterate(centroids, labels);
+        
+        sleep(150);
+    }
+    
+    /**
+     * Sets GUI state to done.
+     */
+    @Override
+    public void done() {
+        set_state("4. Reached stable solution");
+        
+        rp.done();
+        
+        // Animate circles
+        animate(48);
+        
+        sleep(1000);
+    }
+    
+    /**
+     * Sets the state label. The label is updated on the event dispatch thread
+     * so the clustering thread doesn't wait for the GUI.
+     * 
+     * @param text State text
+     */
+    private void set_state(String text) {
+        SwingUtilities.invokeLater(() -> state.setText(text));
+    }
+    
+    /**
+     * Animates the centroid circles by growing and shrinking them, if the GUI
+     * is paced.
+     * 
+     * @param steps Number of animation steps, 100 ms each
+     */
+    private void animate(int steps) {
+        if (!paced) return;
+        
+        int cent_size = 9;
+        int dir = 1;
+        for (int i = 0; i < steps; i++)
+        {
+            cent_size += 2 * dir;
+            rp.anim_centroid(cent_size);
+            sleep(100);
+            
+            if (cent_size == 17) dir *= -1;
+            if (cent_size == 9) dir *= -1;   
+        }
+    }
+    
+    /**
+     * GUI sleep, only if the GUI is paced.
+     * 
+     * @param ms Milliseconds to sleep
+     */
+    private void sleep(int ms) {
+        if (!paced) return;
+        try {
+            Thread.sleep(ms);
+        }
+        catch (InterruptedException ex) {
+            
+        }
+    }
+}
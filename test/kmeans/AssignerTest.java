@@ -0,0 +1,79 @@
+package kmeans;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the accelerated, blocked and k-d tree assigners cluster the
+ * same as the plain Lloyd assignment.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+class AssignerTest 
+{
+    /**
+     * Runs k-means with an assigner from the same seed.
+     * 
+     * @param data The dataset
+     * @param k Number of clusters
+     * @param a The assigner
+     * @return The result
+     */
+    private static KMeansResult run(Dataset data, int k, Assigner a) {
+        KMeans km = new KMeans(new Random(7));
+        km.set_assigner(a);
+        return km.run(data, k);
+    }
+    
+    @Test
+    void hamerly_matches_lloyd() {
+        DenseDataset data = TestData.blobs(4000, 8, 10, 1);
+        TestData.assert_same(run(data, 10, new LloydAssigner()), run(data, 10, new HamerlyAssigner()), 1e-9);
+    }
+    
+    @Test
+    void elkan_matches_lloyd() {
+        DenseDataset data = TestData.blobs(4000, 8, 30, 2);
+        TestData.assert_same(run(data, 30, new LloydAssigner()), run(data, 30, new ElkanAssigner()), 1e-9);
+    }
+    
+    @Test
+    void blocked_matches_lloyd() {
+        DenseDataset data = TestData.blobs(4000, 40, 24, 3);
+        TestData.assert_same(run(data, 24, new LloydAssigner()), run(data, 24, new BlockedAssigner()), 1e-9);
+    }
+    
+    @Test
+    void kd_tree_matches_lloyd() {
+        DenseDataset data = TestData.blobs(20000, 2, 20, 4);
+        TestData.assert_same(run(data, 20, new LloydAssigner()), run(data, 20, new KdTreeAssigner()), 1e-9);
+    }
+    
+    @Test
+    void pool_matches_single_thread() {
+        DenseDataset data = TestData.blobs(20000, 4, 8, 5);
+        KMeans single = new KMeans(new Random(7));
+        single.set_assigner(new HamerlyAssigner());
+        single.block_size = 1000;
+        KMeansResult exp = single.run(data, 8);
+        
+        // Sums are merged in the same order on the pool
+        KMeans km = new KMeans(new Random(7));
+        km.set_assigner(new HamerlyAssigner());
+        km.set_pool(new ForkJoinPool(4));
+        km.block_size = 1000;
+        TestData.assert_same(exp, km.run(data, 8), 0);
+    }
+    
+    @Test
+    void auto_picks_exact_assignment_for_rechecked_data() {
+        DenseDataset data = TestData.blobs(1000, 4, 4, 6);
+        FloatDataset reduced = FloatDataset.of(data);
+        reduced.set_exact(data);
+        assertTrue(Assigner.auto(reduced, 4) instanceof LloydAssigner);
+        assertTrue(Assigner.fastest(reduced, 4) instanceof LloydAssigner);
+    }
+}
@@ -0,0 +1,87 @@
+package kmeans;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that a run resumed from a checkpoint ends as if it hadn't been
+ * interrupted.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+class CheckpointTest 
+{
+    // Directory for the checkpoint files
+    @TempDir
+    Path dir;
+    
+    /**
+     * Creates a run from a fixed seed.
+     * 
+     * @param a The assigner
+     * @return The run
+     */
+    private static KMeans create(Assigner a) {
+        KMeans km = new KMeans(new Random(3));
+        km.set_assigner(a);
+        return km;
+    }
+    
+    /**
+     * Interrupts a run after some iterations, resumes it from the checkpoint
+     * and checks that it ends as the uninterrupted run.
+     * 
+     * @param data The dataset
+     * @param k Number of clusters
+     * @param first Assigner of the interrupted run
+     * @param second Assigner of the resumed run
+     * @param reference Assigner of the uninterrupted run
+     */
+    private void check_resume(Dataset data, int k, Assigner first, Assigner second, Assigner reference) throws IOException {
+        KMeansResult exp = create(reference).run(data, k);
+        assertTrue(exp.iterations > 3, "run must be longer than the checkpointed part");
+        
+        Path file = dir.resolve("run.ckpt");
+        KMeans km = create(first);
+        km.set_max_iterations(3);
+        try (Checkpointer cp = new Checkpointer(file, 3, 0)) {
+            km.set_checkpointer(cp);
+            km.run(data, k);
+        }
+        assertEquals(3, Checkpoint.read(file).iteration);
+        
+        // Another seed, so the randomizer must come from the checkpoint
+        KMeans resumed = new KMeans(new Random(99));
+        resumed.set_assigner(second);
+        TestData.assert_same(exp, resumed.resume(data, file), 0);
+    }
+    
+    @Test
+    void resume_matches_uninterrupted_run() throws IOException {
+        DenseDataset data = TestData.blobs(5000, 4, 8, 1);
+        check_resume(data, 8, new LloydAssigner(), new LloydAssigner(), new LloydAssigner());
+    }
+    
+    @Test
+    void resume_rebuilds_bounds() throws IOException {
+        DenseDataset data = TestData.blobs(5000, 4, 8, 2);
+        check_resume(data, 8, new HamerlyAssigner(), new ElkanAssigner(), new LloydAssigner());
+    }
+    
+    @Test
+    void resume_rejects_other_dataset() throws IOException {
+        DenseDataset data = TestData.blobs(1000, 4, 4, 3);
+        Path file = dir.resolve("run.ckpt");
+        Checkpoint.write(file, new Checkpoint(1, 4, new double[16], new int[1000], new Random(1)));
+        
+        KMeans km = new KMeans(new Random(1));
+        assertThrows(IllegalArgumentException.class, () -> km.resume(TestData.blobs(999, 4, 4, 3), file));
+        assertThrows(IllegalArgumentException.class, () -> km.resume(TestData.blobs(1000, 3, 4, 3), file));
+        assertEquals(1000, km.resume(data, file).labels.length);
+    }
+}
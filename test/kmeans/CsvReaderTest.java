@@ -0,0 +1,78 @@
+package kmeans;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks parsing of CSV files and selection of columns.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+class CsvReaderTest 
+{
+    // Directory for the CSV files
+    @TempDir
+    Path dir;
+    
+    /**
+     * Writes a CSV file.
+     * 
+     * @param text Contents of the file
+     * @return The file
+     */
+    private Path write(String text) throws IOException {
+        Path file = dir.resolve("data.csv");
+        Files.writeString(file, text);
+        return file;
+    }
+    
+    @Test
+    void reads_values() throws IOException {
+        Path file = write("1,2.5,-3\n4e2, 0.125 ,\"6\"\r\n");
+        DenseDataset data = new CsvReader().read(file);
+        assertEquals(2, data.size());
+        assertArrayEquals(new double[] {1, 2.5, -3, 400, 0.125, 6}, data.values);
+    }
+    
+    @Test
+    void skips_blank_lines() throws IOException {
+        Path file = write("1,2,3\n   \n4,5,6\n\t\r\n\n7,8,9\n  ");
+        DenseDataset data = new CsvReader().read(file);
+        assertEquals(3, data.size());
+        assertArrayEquals(new double[] {1, 2, 3, 4, 5, 6, 7, 8, 9}, data.values);
+    }
+    
+    @Test
+    void selects_columns() throws IOException {
+        Path file = write("a,b,c\n1,2,3\n4,5,6\n");
+        assertTrue(CsvReader.detect_header(file, ','));
+        
+        CsvReader r = new CsvReader();
+        r.set_header(true);
+        r.set_columns(2, 0);
+        assertArrayEquals(new double[] {3, 1, 6, 4}, r.read(file).values);
+        r.set_columns("b", "c");
+        assertArrayEquals(new double[] {2, 3, 5, 6}, r.read(file).values);
+        r.set_columns("d");
+        assertThrows(IOException.class, () -> r.read(file));
+    }
+    
+    @Test
+    void rejects_duplicate_columns() {
+        CsvReader r = new CsvReader();
+        assertThrows(IllegalArgumentException.class, () -> r.set_columns(0, 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> r.set_columns(-1));
+        assertThrows(IllegalArgumentException.class, () -> r.set_columns("a", "a"));
+    }
+    
+    @Test
+    void rejects_short_rows() throws IOException {
+        Path file = write("1,2,3\n4,5\n");
+        IOException ex = assertThrows(IOException.class, () -> new CsvReader().read(file));
+        assertTrue(ex.getMessage().contains("row 2"), ex.getMessage());
+    }
+}
@@ -0,0 +1,96 @@
+package kmeans;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks binning of instances into the density grid and the updates from
+ * the instances that changed cluster.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+class DensityGridTest 
+{
+    // Colors of the clusters
+    static final Color[] COLORS = {Color.red, Color.green, Color.blue, Color.orange, Color.cyan};
+    
+    /**
+     * Creates a grid with all instances binned.
+     * 
+     * @param data The instances
+     * @return The grid
+     */
+    private static DensityGrid grid(Dataset data) {
+        DensityGrid g = new DensityGrid(200, 100, COLORS);
+        g.init(data);
+        return g;
+    }
+    
+    /**
+     * Returns the total number of instances binned in a grid.
+     * 
+     * @param g The grid
+     * @return Number of instances
+     */
+    private static int binned(DensityGrid g) {
+        int sum = 0;
+        for (int t : g.total) {
+            sum += t;
+        }
+        return sum;
+    }
+    
+    @Test
+    void bins_instances_outside_pixel_range() {
+        DenseDataset data = TestData.blobs(5000, 2, 4, 1);
+        for (int i = 0; i < data.values.length; i++) {
+            data.values[i] = data.values[i] * 1000 - 50000;
+        }
+        DensityGrid g = grid(data);
+        assertEquals(5000, binned(g));
+        assertEquals(0, g.grid_x(g.min_x), 1e-9);
+        assertEquals(199, g.grid_x(g.min_x + 199 / g.scale_x), 1e-9);
+    }
+    
+    @Test
+    void plots_one_attribute_against_zero() {
+        DenseDataset data = TestData.blobs(1000, 1, 3, 2);
+        assertEquals(1000, binned(grid(data)));
+        
+        // All instances in one point
+        assertEquals(10, binned(grid(new DenseDataset(new double[20], 2))));
+    }
+    
+    @Test
+    void moved_update_matches_full_update() {
+        DenseDataset data = TestData.blobs(5000, 3, 5, 3);
+        DensityGrid g = grid(data);
+        
+        KMeans km = new KMeans(new Random(4));
+        km.set_track_moved(true);
+        km.add_listener(new KMeansListener() {
+            // Instances that changed cluster in the iteration
+            int[] moved;
+            int count;
+            
+            @Override
+            public void moved(int[] moved, int count) {
+                this.moved = moved;
+                this.count = count;
+            }
+            
+            @Override
+            public void iterate(double[] centroids, int[] labels) {
+                assertNotNull(moved);
+                g.update(data, labels, 5, moved, count);
+                DensityGrid full = grid(data);
+                full.update(data, labels, 5, null, 0);
+                assertArrayEquals(full.pixels(), g.pixels());
+            }
+        });
+        km.run(data, 5);
+    }
+}
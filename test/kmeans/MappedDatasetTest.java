@@ -0,0 +1,106 @@
+package kmeans;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that binary dataset files read back what was written, in one or
+ * several segments and shards.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+class MappedDatasetTest 
+{
+    // Directory for the dataset files
+    @TempDir
+    Path dir;
+    
+    @Test
+    void float64_round_trip() throws IOException {
+        DenseDataset data = TestData.blobs(1000, 7, 3, 1);
+        Path file = dir.resolve("data.bin");
+        MappedDataset.write(file, data, MappedDataset.FLOAT64);
+        
+        MappedDataset res = MappedDataset.open(file);
+        assertEquals(data.size(), res.size());
+        assertEquals(data.dimensions(), res.dimensions());
+        for (int i = 0; i < data.size(); i++) {
+            for (int j = 0; j < data.dimensions(); j++) {
+                assertEquals(data.get(i, j), res.get(i, j));
+            }
+        }
+    }
+    
+    @Test
+    void float32_round_trip() throws IOException {
+        DenseDataset data = TestData.blobs(1000, 7, 3, 2);
+        Path file = dir.resolve("data.bin");
+        MappedDataset.write(file, data, MappedDataset.FLOAT32);
+        
+        MappedDataset res = MappedDataset.open(file);
+        for (int i = 0; i < data.size(); i++) {
+            for (int j = 0; j < data.dimensions(); j++) {
+                assertEquals((float)data.get(i, j), res.get(i, j));
+            }
+        }
+    }
+    
+    @Test
+    void segments_hold_whole_instances() throws IOException {
+        DenseDataset data = TestData.blobs(1000, 5, 3, 3);
+        Path file = dir.resolve("data.bin");
+        MappedDataset.write(file, data, MappedDataset.FLOAT64);
+        
+        // 3 instances of 40 bytes and a bit in each segment
+        MappedDataset res = MappedDataset.open(file, 130);
+        assertEquals(3, res.seg_rows);
+        double[] c = {1, 2, 3, 4, 5, 50, 50, 50, 50, 50};
+        double[] out = new double[2];
+        for (int i = 0; i < data.size(); i++) {
+            for (int j = 0; j < data.dimensions(); j++) {
+                assertEquals(data.get(i, j), res.get(i, j));
+            }
+            assertEquals(data.sq_euclidean(i, c, 5), res.sq_euclidean(i, c, 5), 1e-9);
+            res.sq_euclidean_all(i, c, 2, out);
+            assertEquals(data.sq_euclidean(i, c, 0), out[0], 1e-9);
+            assertEquals(data.sq_euclidean(i, c, 5), out[1], 1e-9);
+        }
+    }
+    
+    @Test
+    void shards_cover_all_instances_in_order() throws IOException {
+        DenseDataset data = TestData.blobs(1001, 3, 3, 4);
+        Path file = dir.resolve("data.bin");
+        MappedDataset.write(file, data, MappedDataset.FLOAT64);
+        
+        int i = 0;
+        for (int s = 0; s < 3; s++) {
+            MappedDataset shard = MappedDataset.open(file, s, 3);
+            for (int r = 0; r < shard.size(); r++, i++) {
+                assertEquals(data.get(i, 0), shard.get(r, 0));
+                assertEquals(data.get(i, 2), shard.get(r, 2));
+            }
+        }
+        assertEquals(data.size(), i);
+        assertThrows(IllegalArgumentException.class, () -> MappedDataset.open(file, 3, 3));
+    }
+    
+    @Test
+    void truncated_file_is_rejected() throws IOException {
+        DenseDataset data = TestData.blobs(100, 3, 3, 5);
+        Path file = dir.resolve("data.bin");
+        MappedDataset.write(file, data, MappedDataset.FLOAT64);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.truncate(ch.size() - 8);
+        }
+        assertThrows(IOException.class, () -> MappedDataset.open(file));
+        
+        Files.write(file, new byte[] {1, 2, 3});
+        assertThrows(IOException.class, () -> MappedDataset.open(file));
+    }
+}
@@ -0,0 +1,70 @@
+package kmeans;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks mini-batch k-means and reading batches from a file.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+class MiniBatchKMeansTest 
+{
+    // Directory for the dataset files
+    @TempDir
+    Path dir;
+    
+    @Test
+    void file_batches_read_all_passes() throws IOException {
+        DenseDataset data = TestData.blobs(1000, 3, 3, 1);
+        Path file = dir.resolve("data.bin");
+        MappedDataset.write(file, data, MappedDataset.FLOAT64);
+        
+        try (FileBatches src = new FileBatches(file, 2)) {
+            assertEquals(1000, src.size());
+            assertEquals(3, src.dimensions());
+            int i = 0;
+            Dataset batch;
+            while ((batch = src.next_batch(300)) != null) {
+                for (int r = 0; r < batch.size(); r++, i++) {
+                    for (int j = 0; j < 3; j++) {
+                        assertEquals(data.get(i % 1000, j), batch.get(r, j));
+                    }
+                }
+            }
+            assertEquals(2000, i);
+            assertNull(src.next_batch(300));
+        }
+    }
+    
+    @Test
+    void file_batches_match_memory_batches() throws IOException {
+        DenseDataset data = TestData.blobs(2000, 4, 4, 2);
+        Path file = dir.resolve("data.bin");
+        MappedDataset.write(file, data, MappedDataset.FLOAT32);
+        
+        MiniBatchKMeans from_file = new MiniBatchKMeans(4, new Random(3));
+        KMeansResult res;
+        try (FileBatches src = new FileBatches(file, 3)) {
+            res = from_file.fit(src, 250, Integer.MAX_VALUE);
+        }
+        assertEquals(24, res.iterations);
+        
+        MiniBatchKMeans from_memory = new MiniBatchKMeans(4, new Random(3));
+        KMeansResult exp = from_memory.fit(new DatasetBatches(FloatDataset.of(data)), 250, 24);
+        assertArrayEquals(exp.centroids, res.centroids);
+    }
+    
+    @Test
+    void partial_fit_rejects_other_width() {
+        MiniBatchKMeans km = new MiniBatchKMeans(3, new Random(4));
+        km.partial_fit(TestData.blobs(100, 4, 3, 4));
+        assertThrows(IllegalArgumentException.class, () -> km.partial_fit(TestData.blobs(100, 3, 3, 5)));
+        assertEquals(10, km.predict(TestData.blobs(10, 4, 3, 6)).length);
+    }
+}
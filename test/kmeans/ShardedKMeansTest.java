@@ -0,0 +1,37 @@
+package kmeans;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that a run sharded over worker processes clusters the same as a run
+ * in one process.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+class ShardedKMeansTest 
+{
+    // Directory for the dataset file
+    @TempDir
+    Path dir;
+    
+    @Test
+    void sharded_run_matches_single_process() throws IOException {
+        DenseDataset data = TestData.blobs(3001, 3, 5, 1);
+        Path file = dir.resolve("data.bin");
+        MappedDataset.write(file, data, MappedDataset.FLOAT64);
+        double[] init = new KMeansPlusPlus().seed(data, 5, new Random(5));
+        
+        KMeans km = new KMeans(new Random(5));
+        km.set_seeding((d, k, rnd) -> init.clone());
+        km.set_assigner(new LloydAssigner());
+        KMeansResult exp = km.run(data, 5);
+        
+        try (ShardedKMeans sharded = ShardedKMeans.launch(file, 2, new Random(5))) {
+            TestData.assert_same(exp, sharded.run(init, 5), 1e-9);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package kmeans;
+
+import java.util.Random;
+
+/**
+ * Generated datasets for the tests.
+ * 
+ * @author Johan Hagelbäck (johan.hagelback@gmail.com)
+ */
+class TestData 
+{
+    /**
+     * Generates Gaussian blobs around random centers in [0, 100) for each
+     * attribute.
+     * 
+     * @param n Number of instances
+     * @param d Number of attributes
+     * @param blobs Number of blobs
+     * @param seed Seed for the randomizer
+     * @return The dataset
+     */
+    static DenseDataset blobs(int n, int d, int blobs, long seed) {
+        Random rnd = new Random(seed);
+        double[] centers = new double[blobs * d];
+        for (int i = 0; i < centers.length; i++) {
+            centers[i] = rnd.nextDouble() * 100;
+        }
+        
+        DenseDataset data = new DenseDataset(n, d);
+        for (int i = 0; i < n; i++) {
+            int b = rnd.nextInt(blobs);
+            for (int j = 0; j < d; j++) {
+                data.set(i, j, centers[b * d + j] + rnd.nextGaussian() * 5);
+            }
+        }
+        return data;
+    }
+    
+    /**
+     * Checks that two runs ended with the same labels, number of iterations
+     * and centroids.
+     * 
+     * @param expected The reference run
+     * @param actual The run to check
+     * @param delta Max difference between centroid attributes
+     */
+    static void assert_same(KMeansResult expected, KMeansResult actual, double delta) {
+        org.junit.jupiter.api.Assertions.assertArrayEquals(expected.labels, actual.labels, "labels");
+        org.junit.jupiter.api.Assertions.assertEquals(expected.iterations, actual.iterations, "iterations");
+        for (int c = 0; c < expected.centroids.length; c++) {
+            org.junit.jupiter.api.Assertions.assertArrayEquals(expected.centroids[c], actual.centroids[c], delta, "centroid " + c);
+        }
+    }
+}